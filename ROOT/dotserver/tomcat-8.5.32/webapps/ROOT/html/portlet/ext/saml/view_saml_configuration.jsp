@@ -66,6 +66,7 @@
 				<dl>
 					<dt><label for="id"><%=LanguageUtil.get(pageContext, "idp-id")%></label></dt>
 					<dd><input type="text" name="id" id="id" value="" dojoType="dijit.form.TextBox" readonly="true" class="input-text-naked"></dd>
+					<input type="hidden" name="version" id="version" value="">
 				</dl>
 				<dl>
 					<dt><label for="idpName" class="required"><%=LanguageUtil.get(pageContext, "idp-config-name-label")%></label></dt>
@@ -37,8 +37,12 @@
 					dijit.byId('addEditIdPDialog').hide();
 					idpAdmin.renderIdpConfigs();
 				},
-				error: function (error) {
-					alert("An unexpected error occurred: " + error);
+				error: function (error, ioargs) {
+					if (ioargs && ioargs.xhr && ioargs.xhr.status == 409) {
+						alert("This IdP was changed by someone else while you were editing it. Please reopen it and apply your changes again.");
+					} else {
+						alert("An unexpected error occurred: " + error);
+					}
 				}
 			};
 			deferred = dojo.xhrPost(xhrArgs);
@@ -179,6 +183,7 @@
 				resetIdpConfig(mySitesMap, "siteListingTable");
 
 				addEditIdPForm.elements["id"].value = idp.id;
+				addEditIdPForm.elements["version"].value = idp.version;
 				addEditIdPForm.elements["idpName"].value = idp.idpName;
 				if (idp.enabled){
 					document.getElementById("enabledTrue").checked = true;
@@ -288,6 +293,7 @@
 		document.getElementById("idPMetadataFile").value = "";
 
 		document.getElementById("optionalProperties").value = "";
+		document.getElementById("version").value = "";
 
 		sitesMap.clear();
 		resetTable(tableId);
@@ -1,6 +1,8 @@
 package com.dotcms.plugin.saml.v3.cache;
 
 import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.config.IdpConfigIndex;
+import com.dotcms.plugin.saml.v3.config.SiteRoutingTable;
 
 import com.dotmarketing.business.Cachable;
 import com.dotmarketing.business.DotCacheException;
@@ -18,18 +20,7 @@ import java.util.Map;
  */
 public abstract class SamlCache implements Cachable
 {
-	protected static final String DEFAULT = "default";
-	protected static final String INDEX = "index";
-	protected static final String DISABLED_SITES = "disabled-sites";
-	protected static final String COUNT = "count";
-
-	protected static final String DEFAULT_IDP_CONFIG_GROUP = "Default-Ipd-Config";
-	protected static final String IDP_CONFIG_GROUP = "Ipd-Config";
-	protected static final String IDP_CONFIG_COUNT_GROUP = "Ipd-Config-Count";
-	protected static final String SITES_TO_IDP_GROUP = "Sites-To-Idp";
-	protected static final String DISABLED_SITES_GROUP = "Disabled-Sites";
-	protected static final String IDP_INDEX_GROUP = "Idp-Index";
-	protected static final String DISABLED_SITES_INDEX_GROUP = "Disabled-Sites-Index";
+	protected static final String SAML_CONFIG_GROUP = "Saml-Config";
 
 	/**
 	 * Adds a {@link IdpConfig} to the caching structure. Null objects or with empty
@@ -41,15 +32,6 @@ public abstract class SamlCache implements Cachable
 	 */
 	public abstract void addDefaultIdpConfig( IdpConfig idpConfig ) throws DotCacheException;
 
-	/**
-	 * Adds a site to the caching structure. Null objects or with empty
-	 * values will not be added to the cache. In case the site already exists,
-	 * the entry will be updated with the new value.
-	 * 
-	 * @param site - The disabled site id to cache.
-	 */
-	protected abstract void addDisabledSiteId( String site );
-
 	/**
 	 * Adds sites to the caching structure. Null objects or with empty
 	 * values will not be added to the cache. In case the site already exists,
@@ -69,14 +51,6 @@ public abstract class SamlCache implements Cachable
 	 */
 	public abstract void addIdpConfig( IdpConfig idpConfig ) throws DotCacheException;
 
-	/**
-	 * Adds the idpConfigId to the index.
-	 * 
-	 * @param idpConfigId - The ID of the {@link IdpConfig} object to add to index in cache.
-	 * @throws DotCacheException 
-	 */
-	protected abstract void addIdpConfigIdToIndex( String idpConfigId );
-
 	/**
 	 * Adds a list of {@link IdpConfig} to the caching structure. Null objects or with empty
 	 * values will not be added to the cache. In case the config already exists,
@@ -97,26 +71,6 @@ public abstract class SamlCache implements Cachable
 	 */
 	public abstract void addSiteIdpConfig( String site, IdpConfig idpConfig ) throws DotCacheException;
 
-	/**
-	 * Adds a site to the caching structure. Null objects or with empty
-	 * values will not be added to the cache. In case the site already exists,
-	 * the entry will be updated with the new value.
-	 * 
-	 * @param site - The associated site to cache.
-	 * @param idpConfigId - The ID of the {@link IdpConfig} object to cache.
-	 */
-	protected abstract void addSiteIdpConfigId( String site, String idpConfigId );
-
-	/**
-	 * Adds sites to the caching structure. Null objects or with empty
-	 * values will not be added to the cache. In case the site already exists,
-	 * the entry will be updated with the new value.
-	 * 
-	 * @param sites - The associated sites to cache.
-	 * @param idpConfigId - The ID of the {@link IdpConfig} object to cache.
-	 */
-	protected abstract void addSitesIdpConfigId( Map<String, String> sites, String idpConfigId );
-
 	/**
 	 * Returns the default {@link IdpConfig} object associated to the DEFAULT key.
 	 */
@@ -137,7 +91,7 @@ public abstract class SamlCache implements Cachable
 	@Override
 	public String[] getGroups()
 	{
-		return new String[] { DEFAULT_IDP_CONFIG_GROUP, IDP_CONFIG_GROUP, IDP_CONFIG_COUNT_GROUP, SITES_TO_IDP_GROUP, DISABLED_SITES_GROUP, IDP_INDEX_GROUP, DISABLED_SITES_INDEX_GROUP };
+		return new String[] { SAML_CONFIG_GROUP };
 	}
 
 	/**
@@ -149,7 +103,8 @@ public abstract class SamlCache implements Cachable
 	public abstract IdpConfig getIdpConfig( String idpConfigId );
 
 	/**
-	 * Returns all the {@link IdpConfig} objects.
+	 * Returns all the {@link IdpConfig} objects, or an empty list if they have
+	 * not been loaded into the cache yet.
 	 * 
 	 * @return All the {@link IdpConfig} objects.
 	 */
@@ -158,9 +113,19 @@ public abstract class SamlCache implements Cachable
 	@Override
 	public String getPrimaryGroup()
 	{
-		return IDP_CONFIG_GROUP;
+		return SAML_CONFIG_GROUP;
 	}
 
+	/**
+	 * Returns the routing table of the cached configuration, or null if the
+	 * cache does not hold the config index, the default config id and the
+	 * disabled sites yet (see {@link #load(IdpConfigIndex, String, Map)}).
+	 * Building it does not need any config to be loaded.
+	 * 
+	 * @return The {@link SiteRoutingTable}.
+	 */
+	public abstract SiteRoutingTable getRoutingTable();
+
 	/**
 	 * Returns the {@link IdpConfig} object associated to the specified key.
 	 * 
@@ -176,6 +141,18 @@ public abstract class SamlCache implements Cachable
 	 */
 	public abstract List<String> getSites();
 
+	/**
+	 * Replaces the config index, the default config id and the disabled sites
+	 * in one step, as read from the repository. The cached configs that are
+	 * no longer indexed are dropped, the others are kept. A default id that is
+	 * not set or is not indexed is left out.
+	 * 
+	 * @param index - The {@link IdpConfigIndex} of all the configs.
+	 * @param defaultIdpConfigId - The ID of the default {@link IdpConfig}.
+	 * @param disabledSites - The disabled sites.
+	 */
+	public abstract void load( IdpConfigIndex index, String defaultIdpConfigId, Map<String, String> disabledSites );
+
 	/**
 	 * Clears and rebuilds the cache
 	 */
@@ -194,34 +171,4 @@ public abstract class SamlCache implements Cachable
 	 * @throws DotCacheException 
 	 */
 	public abstract void removeIdpConfig( IdpConfig idpConfig ) throws DotCacheException;
-
-	/**
-	 * Removes the {@link IdpConfig} object from the caching structure.
-	 * 
-	 * @param idpConfigId - The ID of the {@link IdpConfig} object that will be removed.
-	 * @throws DotCacheException 
-	 */
-	protected abstract void removeIdpConfig( String idpConfigId ) throws DotCacheException;
-
-	/**
-	 * Removes the idpConfigId from the index.
-	 * 
-	 * @param idpConfigId - The ID of the {@link IdpConfig} object to remove from index in cache.
-	 */
-	protected abstract void removeIdpConfigIdFromIndex( String idpConfigId );
-
-	/**
-	 * Removes the site object from the caching structure.
-	 * 
-	 * @param site - The site that will be removed.
-	 */
-	protected abstract void removeSiteIdpConfigId( String site );
-
-	/**
-	 * Removes sites from the caching structure.
-	 * 
-	 * @param sites - The associated sites to remove from the caching structure.
-	 * @param idpConfigId - The ID of the {@link IdpConfig} object to cache.
-	 */
-	protected abstract void removeSitesIdpConfigId( Map<String, String> sites, String idpConfigId );
 }
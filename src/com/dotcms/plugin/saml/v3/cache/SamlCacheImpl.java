@@ -1,31 +1,31 @@
 package com.dotcms.plugin.saml.v3.cache;
 
 import com.dotcms.plugin.saml.v3.config.IdpConfig;
-import com.dotcms.plugin.saml.v3.config.IdpConfigWriterReader;
+import com.dotcms.plugin.saml.v3.config.IdpConfigHelper;
+import com.dotcms.plugin.saml.v3.config.IdpConfigIndex;
+import com.dotcms.plugin.saml.v3.config.IdpConfigRepository;
+import com.dotcms.plugin.saml.v3.config.SiteRoutingTable;
 
 import com.dotcms.repackage.com.google.common.base.Strings;
 
-import com.dotmarketing.business.CacheLocator;
-import com.dotmarketing.business.DotCacheAdministrator;
 import com.dotmarketing.business.DotCacheException;
-import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.json.JSONException;
 
-import com.liferay.util.FileUtil;
-
 import static com.dotcms.repackage.com.google.common.base.Preconditions.checkNotNull;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Implements the SAML config caching functionality.
+ * <p>
+ * The whole configuration is kept in an immutable {@link SamlConfigSnapshot}
+ * published through a single atomic reference: readers get a consistent view
+ * without locking, writers build a new snapshot and swap it in.
  *
  * @author Nathan (Ethode)
  * @version 4.3.2
@@ -33,24 +33,14 @@ import java.util.Map;
  */
 public class SamlCacheImpl extends SamlCache
 {
-	protected DotCacheAdministrator cache = null;
-
-	private final String assetsPath;
-	private final String idpFilePath;
+	private final AtomicReference<SamlConfigSnapshot> snapshot = new AtomicReference<>( SamlConfigSnapshot.EMPTY );
 
 	/**
-	 * Default constructor. Instantiates the {@link DotCacheAdministrator}
-	 * object used to store all the configuration information.
+	 * Default constructor.
 	 */
 	public SamlCacheImpl()
 	{
-		cache = CacheLocator.getCacheAdministrator();
 
-		this.assetsPath = Config.getStringProperty( "ASSET_REAL_PATH", FileUtil.getRealPath( Config.getStringProperty( "ASSET_PATH", "/assets" ) ) );
-		this.idpFilePath = assetsPath + File.separator + "saml" + File.separator + "config.json";
-
-		//Logger.info( this, "this.assetsPath = " + this.assetsPath );
-		//Logger.info( this, "this.idpFilePath = " + this.idpFilePath );
 	}
 
 	@Override
@@ -58,29 +48,9 @@ public class SamlCacheImpl extends SamlCache
 	{
 		String tag = "addDefaultIdpConfig( IdpConfig ) ";
 
-		idpConfig = checkNotNull( idpConfig, tag + "idpConfig is required." );
-
-		if ( Strings.isNullOrEmpty( idpConfig.getId() ) )
-		{
-			throw new IllegalArgumentException( tag + "idpConfig must have an id." );
-		}
-
-		//Logger.info( this, "Adding default idpConfig to cache id = " + idpConfig.getId() );
+		IdpConfig defaultIdpConfig = this.checkIdpConfig( idpConfig, tag );
 
-		this.cache.put( DEFAULT, idpConfig.getId(), DEFAULT_IDP_CONFIG_GROUP );
-		this.addIdpConfig( idpConfig );
-	}
-
-	@Override
-	protected void addDisabledSiteId( String site )
-	{
-		String tag = "addDisabledSiteId( String ) ";
-
-		site = checkNotNull( site.trim(), tag + "site is required." ).trim();
-
-		//Logger.info( this, "Adding disabled site to cache = " + site.trim() );
-
-		this.cache.put( site, site, DISABLED_SITES_INDEX_GROUP );
+		this.snapshot.updateAndGet( current -> current.withIdpConfig( defaultIdpConfig ).withDefaultIdpConfigId( defaultIdpConfig.getId() ) );
 	}
 
 	@Override
@@ -90,21 +60,9 @@ public class SamlCacheImpl extends SamlCache
 
 		try
 		{
-			sites = checkNotNull( sites, tag + "sites is required." );
-
-			//Logger.info( this, "Flushing DISABLED_SITES_GROUP cache." );
-			//Logger.info( this, "Flushing DISABLED_SITES_INDEX_GROUP cache." );
-
-			cache.flushGroup( DISABLED_SITES_GROUP );
-			cache.flushGroup( DISABLED_SITES_INDEX_GROUP );
-
-			this.cache.put( DISABLED_SITES, sites, DISABLED_SITES_GROUP );
-
-			sites.forEach( ( identifier, hostname )->{
-				this.addDisabledSiteId( identifier.trim() );
-				this.addDisabledSiteId( hostname.trim() );
-			});
+			Map<String, String> disabledSites = checkNotNull( sites, tag + "sites is required." );
 
+			this.snapshot.updateAndGet( current -> current.withDisabledSites( disabledSites ) );
 		}
 		catch ( Exception exception )
 		{
@@ -118,88 +76,30 @@ public class SamlCacheImpl extends SamlCache
 	{
 		String tag = "addIdpConfig( IdpConfig ) ";
 
-		idpConfig = checkNotNull( idpConfig, tag + "idpConfig is required." );
+		IdpConfig newIdpConfig = this.checkIdpConfig( idpConfig, tag );
 
-		if ( Strings.isNullOrEmpty( idpConfig.getId() ) )
-		{
-			throw new IllegalArgumentException( tag + "idpConfig must have an id and cannot be default." );
-		}
-
-		String idpConfigId = idpConfig.getId();
-
-		//Logger.info( this, "Adding idpConfig to cache id = " + idpConfig.getId() );
-
-		this.cache.put( idpConfigId, idpConfig, IDP_CONFIG_GROUP );
-		incrementIdpCount();
-		this.addIdpConfigIdToIndex( idpConfigId );
-
-		Map<String, String> sites = idpConfig.getSites();
-
-		if ( sites != null && sites.size() > 0 )
-		{
-			this.addSitesIdpConfigId( sites, idpConfigId );
-		}
-
-	}
-
-	@SuppressWarnings( "unchecked" )
-	@Override
-	protected void addIdpConfigIdToIndex( String idpConfigId )
-	{
-		String tag = "addIdpConfigToIndex( String ) ";
-		List<String> idpIndex = null;
-
-		idpConfigId = checkNotNull( idpConfigId, tag + "idpConfigId is required." ).trim();
-
-		try
-		{
-			idpIndex = (List<String>) this.cache.get( INDEX, IDP_INDEX_GROUP );
-		}
-		catch ( DotCacheException dotCacheException )
-		{
-			//Logger.info( this, tag + "idpIndex not found in [" + IDP_INDEX_GROUP + "] cache group: [" + INDEX + "]. Creating new entry." );
-		}
-
-		if ( idpIndex == null )
-		{
-			idpIndex = new ArrayList<String>();
-		}
-
-		idpIndex.remove( idpConfigId );
-		idpIndex.add( idpConfigId );
-
-		//Logger.info( this, "Adding idpConfig id to index cache id = " + idpConfigId );
-
-		this.cache.put( INDEX, idpIndex, IDP_INDEX_GROUP );
+		this.snapshot.updateAndGet( current -> current.withIdpConfig( newIdpConfig ) );
 	}
 
 	@Override
 	public void addIdpConfigs( List<IdpConfig> idpConfigs )
 	{
 		String tag = "addIdpConfigs( List<IdpConfig> ) ";
+		List<IdpConfig> validIdpConfigs = new ArrayList<>();
 
-		//Logger.info( this, "Clearing idpConfig cache." );
-
-		this.clearCache();
-
-		idpConfigs.forEach( idpConfig ->{
-			try
+		idpConfigs.forEach( idpConfig -> {
+			if ( idpConfig != null && !Strings.isNullOrEmpty( idpConfig.getId() ) )
 			{
-				this.addIdpConfig( idpConfig );
-
-				Map<String, String> sites = idpConfig.getSites();
-
-				if ( sites != null && sites.size() > 0 )
-				{
-					this.addSitesIdpConfigId( sites, idpConfig.getId() );
-				}
-
+				validIdpConfigs.add( idpConfig );
 			}
-			catch ( Exception exception )
+			else
 			{
-				Logger.error( this, tag + "Error adding idpConfig to cache.", exception );
+				Logger.error( this, tag + "Error adding idpConfig to cache, idpConfig must have an id." );
 			}
 		});
+
+		// Replaces the whole snapshot, as the previous flush of all the groups did.
+		this.snapshot.set( SamlConfigSnapshot.of( validIdpConfigs ) );
 	}
 
 	@Override
@@ -207,297 +107,102 @@ public class SamlCacheImpl extends SamlCache
 	{
 		String tag = "addSiteIdpConfig( String, IdpConfig ) ";
 
-		site = checkNotNull( site, tag + "site is required." ).trim();
-		idpConfig = checkNotNull( idpConfig, tag + "idpConfig is required." );
-
-		if ( Strings.isNullOrEmpty( idpConfig.getId() ) )
-		{
-			throw new IllegalArgumentException( tag + "IdpConfig must have an id." );
-		}
-
-		//Logger.info( this, "Adding site to idpConfig id cache site = " + site + " idpConfig id = " + idpConfig.getId() );
-
-		this.cache.put( site, idpConfig.getId(), SITES_TO_IDP_GROUP );
-		this.addIdpConfig( idpConfig );
-	}
-
-	@Override
-	protected void addSiteIdpConfigId( String site, String idpConfigId )
-	{
-		String tag = "addSiteIdpConfigId( String, String ) ";
-
-		site = checkNotNull( site, tag + "site is required." ).trim();
-		idpConfigId = checkNotNull( idpConfigId, tag + "idpConfigId is required." ).trim();
-
-		//Logger.info( this, "Adding site to idpConfig id cache site = " + site + " idpConfig id = " + idpConfigId );
-
-		this.cache.put( site, idpConfigId, SITES_TO_IDP_GROUP );
-	}
-
-	@Override
-	protected void addSitesIdpConfigId( Map<String, String> sites, String idpConfigId )
-	{
-		String tag = "addSitesIdpConfigId( Map<String, String>, String ) ";
-
-		// It's ok for sites to be null,
-		// but we need to check before processing
-		try
-		{
-			sites = checkNotNull( sites, tag + "sites is required." );
-
-			sites.forEach( ( identifier, hostname )->{
-				this.addSiteIdpConfigId( identifier.trim(), idpConfigId.trim() );
-				this.addSiteIdpConfigId( hostname.trim(), idpConfigId.trim() );
-			});
-
-		}
-		catch ( Exception exception )
-		{
-			Logger.error( this, tag + "Error adding sites to cache.", exception );
-		}
+		String trimmedSite = checkNotNull( site, tag + "site is required." ).trim();
+		IdpConfig siteIdpConfig = this.checkIdpConfig( idpConfig, tag );
 
+		this.snapshot.updateAndGet( current -> current.withIdpConfig( siteIdpConfig ).withSiteIdpConfigId( trimmedSite, siteIdpConfig.getId() ) );
 	}
 
 	@Override
 	public void clearCache()
 	{
-		//Logger.info( this, "Flushing Saml cache." );
-
-		for ( String cacheGroup : getGroups() )
-		{
-			cache.flushGroup( cacheGroup );
-		}
+		this.snapshot.set( SamlConfigSnapshot.EMPTY );
 	}
 
 	@Override
 	public IdpConfig getDefaultIdpConfig()
 	{
-		String tag = "getDefaultIdpConfig() ";
-		IdpConfig idpConfig = null;
+		SamlConfigSnapshot current = this.snapshot.get();
+		String idpConfigId = current.getDefaultIdpConfigId();
 
-		try
-		{
-			String idpConfigId = (String) this.cache.get( DEFAULT, DEFAULT_IDP_CONFIG_GROUP );
-			idpConfig = this.getIdpConfig( idpConfigId );
-
-			//Logger.info( this, "Getting default idpConfig from cache id = " + idpConfigId );
-		}
-		catch ( DotCacheException dotCacheException )
-		{
-			//Logger.info( this, tag + "SamlCache entry not found in [" + DEFAULT_IDP_CONFIG_GROUP + "] cache group." );
-		}
-
-		return idpConfig;
+		return ( idpConfigId != null ) ? current.getIdpConfig( idpConfigId ) : null;
 	}
 
 	@Override
 	public String getDefaultIdpConfigId()
 	{
-		String tag = "getDefaultIdpConfigId() ";
-		String idpConfigId = null;
-
-		try
-		{
-			idpConfigId = (String) this.cache.get( DEFAULT, DEFAULT_IDP_CONFIG_GROUP );
-
-			//Logger.info( this, "Getting default idpConfig from cache id = " + idpConfigId );
-		}
-		catch ( DotCacheException dotCacheException )
-		{
-			//Logger.info( this, tag + "SamlCache entry not found in [" + DEFAULT_IDP_CONFIG_GROUP + "] cache group." );
-		}
-
-		return idpConfigId;
+		return this.snapshot.get().getDefaultIdpConfigId();
 	}
 
-	@SuppressWarnings( "unchecked" )
 	@Override
 	public Map<String, String> getDisabledSitesMap()
 	{
-		String tag = "getDisabledSites() ";
-		Map<String, String> disabledSitesMap = new HashMap<String, String>();
-
-		try
-		{
-			disabledSitesMap = (Map<String, String>) this.cache.get( DISABLED_SITES, DISABLED_SITES_INDEX_GROUP );
-
-			//Logger.info( this, "Getting disabled sites map from cache disabledSitesMap = " + disabledSitesMap );
-		}
-		catch ( DotCacheException dotCacheException )
-		{
-			//Logger.info( this, tag + "SamlCache entry not found in [" + DISABLED_SITES_INDEX_GROUP + "] cache group." );
-		}
-
-		return disabledSitesMap;
+		return this.snapshot.get().getDisabledSites();
 	}
 
 	@Override
 	public IdpConfig getIdpConfig( String idpConfigId )
 	{
 		String tag = "getIdpConfig( String ) ";
-		IdpConfig idpConfig = null;
 
 		idpConfigId = checkNotNull( idpConfigId, tag + "idpConfigId is required." ).trim();
 
-		try
-		{
-			idpConfig = (IdpConfig) this.cache.get( idpConfigId, IDP_CONFIG_GROUP );
-
-			//Logger.info( this, "Getting idpConfig from cache id = " + idpConfigId );
-		}
-		catch ( DotCacheException dotCacheException )
-		{
-			//Logger.info( this, tag + "SamlCache entry not found in [" + IDP_CONFIG_GROUP + "] cache group: " + idpConfigId );
-		}
-
-		return idpConfig;
+		return this.snapshot.get().getIdpConfig( idpConfigId );
 	}
 
-	@SuppressWarnings( "unchecked" )
 	@Override
 	public List<IdpConfig> getIdpConfigs()
 	{
-		String tag = "getIdpConfigs() ";
-		List<IdpConfig> idpConfigs = new ArrayList<IdpConfig>();
-
-		try
-		{
-			List<String> idpConfigIds = (List<String>) this.cache.get( INDEX, IDP_INDEX_GROUP );
-
-			if ( idpConfigIds != null && !idpConfigIds.isEmpty() )
-			{
-				idpConfigIds.forEach( idpConfigId -> {
-
-					IdpConfig idpConfig = this.getIdpConfig( idpConfigId );
+		SamlConfigSnapshot current = this.snapshot.get();
 
-					if ( idpConfig != null )
-					{
-						idpConfigs.add( idpConfig );
-					}
-
-				});
-			}
-
-			//Logger.info( this, "Getting idpConfigs from cache idpConfigIds.size() = " + idpConfigIds.size() );
-			//Logger.info( this, "Getting idpConfigs from cache idpConfigs.size() = " + idpConfigs.size() );
-
-			Integer idpCount = getIdpCount();
-
-			//Logger.info( this, "Checking if idpCount == idpConfigs.size()." );
-			//Logger.info( this, idpCount + " == " + idpConfigs.size() + " ?" );
-
-			if ( idpCount != idpConfigs.size() )
-			{
-				// Return an empty list.
-				// This tells the IdpConfigHelper class to
-				// try the file system and invalidate the cache.
-				return new ArrayList<IdpConfig>();
-			}
-			else
-			{
-				//Logger.info( this, "Counts match." );
-			}
-		}
-		catch ( DotCacheException dotCacheException )
-		{
-			//Logger.info( this, tag + "SamlCache read error." );
-		}
+		// An empty list tells the IdpConfigHelper class
+		// to read the file system and reload the cache.
+		return current.isLoaded() ? current.getIdpConfigs() : new ArrayList<IdpConfig>();
+	}
 
-		return idpConfigs;
+	@Override
+	public SiteRoutingTable getRoutingTable()
+	{
+		return this.snapshot.get().getRoutingTable();
 	}
 
 	@Override
 	public IdpConfig getSiteIdpConfig( String site )
 	{
 		String tag = "getSiteIdpConfig( String ) ";
-		IdpConfig idpConfig = null;
 
 		site = checkNotNull( site, tag + "site is required." ).trim();
 
-		try
-		{
-			String idpConfigId = (String) this.cache.get( site, SITES_TO_IDP_GROUP );
-			idpConfig = this.getIdpConfig( idpConfigId );
-
-			//Logger.info( this, "Getting site idpConfig from cache site = " + site + " idpConfig id = " + idpConfigId );
-		}
-		catch ( DotCacheException dotCacheException )
-		{
-			//Logger.info( this, tag + "SamlCache entry not found in [" + SITES_TO_IDP_GROUP + "] cache group: " + site );
-		}
+		SamlConfigSnapshot current = this.snapshot.get();
+		String idpConfigId = current.getSiteIdpConfigId( site );
 
-		return idpConfig;
+		return ( idpConfigId != null ) ? current.getIdpConfig( idpConfigId ) : null;
 	}
 
-	@SuppressWarnings( "unchecked" )
 	@Override
 	public List<String> getSites()
 	{
-		String tag = "getSites() ";
 		List<String> sites = new ArrayList<String>();
 
-		try
-		{
-			List<String> idpConfigIds = (List<String>) this.cache.get( INDEX, IDP_INDEX_GROUP );
-
-			if ( idpConfigIds != null && !idpConfigIds.isEmpty() )
+		this.getIdpConfigs().forEach( idpConfig -> {
+			if ( idpConfig.getSites() != null )
 			{
-				idpConfigIds.forEach( idpConfigId -> {
-
-					IdpConfig idpConfig = this.getIdpConfig( idpConfigId );
-
-					if ( idpConfig != null )
-					{
-						Map<String, String> configSiteMap = idpConfig.getSites();
-						Collection<String> configSites = configSiteMap.values();
-						sites.addAll( configSites );
-					}
-
-				});
+				sites.addAll( idpConfig.getSites().values() );
 			}
-
-			//Logger.info( this, "Getting all sites from all idpConfigs from cache idpConfigIds.size() = " + idpConfigIds.size() + " sites.size() = " + sites.size() );
-
-		}
-		catch ( DotCacheException dotCacheException )
-		{
-			//Logger.info( this, tag + "SamlCache read error." );
-		}
+		});
 
 		return sites;
 	}
 
-	private void incrementIdpCount() throws DotCacheException
-	{
-		Integer count = getIdpCount();
-		count++;
-		this.cache.put( COUNT, "" + count, IDP_CONFIG_COUNT_GROUP );
-	}
-
-	private void decrementIdpCount() throws DotCacheException
+	@Override
+	public void load( IdpConfigIndex index, String defaultIdpConfigId, Map<String, String> disabledSites )
 	{
-		Integer count = getIdpCount();
-		count--;
-		this.cache.put( COUNT, "" + count, IDP_CONFIG_COUNT_GROUP );
-	}
+		String tag = "load( IdpConfigIndex, String, Map<String, String> ) ";
 
-	private Integer getIdpCount() throws DotCacheException
-	{
-		Integer count =  0;
+		IdpConfigIndex newIndex = checkNotNull( index, tag + "index is required." );
 
-		try
-		{
-			count =  Integer.parseInt( (String) this.cache.get( COUNT, IDP_CONFIG_COUNT_GROUP ) );
-		}
-		catch ( Exception exception )
-		{
-			//Logger.info( this, "IdpConfig count not set in cache. Setting to 0." );
-
-			cache.flushGroup( IDP_CONFIG_COUNT_GROUP );
-			this.cache.put( COUNT, "" + 0, IDP_CONFIG_COUNT_GROUP );
-		}
-
-		return ( count != null ? count : 0 );
+		// An unset default is known to be empty rather than unknown, so the routing table can be built.
+		this.snapshot.updateAndGet( current -> current.withIndex( newIndex, defaultIdpConfigId, disabledSites ) );
 	}
 
 	@Override
@@ -505,25 +210,19 @@ public class SamlCacheImpl extends SamlCache
 	{
 		String tag = "refresh() ";
 
-		//Logger.info( this, "Start: Clearing cache and loading all configs." );
-
 		this.clearCache();
 
 		try
 		{
-			this.cache.put( COUNT, "" + 0, IDP_CONFIG_COUNT_GROUP );
-
-			// Read file system
-			List<IdpConfig> idpConfigs = IdpConfigWriterReader.readIdpConfigs( new File( idpFilePath ) );
+			// Read the index only, the configs are loaded on their first lookup.
+			IdpConfigRepository repository = IdpConfigHelper.getInstance().getRepository();
 
 			// Update cache
-			this.addIdpConfigs( idpConfigs );
-
-			//Logger.info( this, "End: Clearing cache and loading all configs." );
+			this.load( repository.findIndex(), repository.getDefaultIdpConfigId(), repository.getDisabledSites() );
 		}
 		catch ( IOException | JSONException exception )
 		{
-			Logger.error( this, tag + "Error refreshing cache from file system.", exception );
+			Logger.error( this, tag + "Error refreshing cache from the config repository.", exception );
 		}
 
 	}
@@ -531,19 +230,13 @@ public class SamlCacheImpl extends SamlCache
 	@Override
 	public void removeDefaultIdpConfig() throws DotCacheException
 	{
-		IdpConfig idpConfig = this.getDefaultIdpConfig();
+		this.snapshot.updateAndGet( current -> {
+			String idpConfigId = current.getDefaultIdpConfigId();
+			IdpConfig idpConfig = ( idpConfigId != null ) ? current.getIdpConfig( idpConfigId ) : null;
+			SamlConfigSnapshot updated = current.withDefaultIdpConfigId( null );
 
-		Map<String, String> sites = idpConfig.getSites();
-
-		if ( sites != null && sites.size() > 0 )
-		{
-			this.removeSitesIdpConfigId( sites, idpConfig.getId() );
-		}
-
-		this.removeIdpConfig( idpConfig.getId() );
-		this.cache.remove( DEFAULT, IDP_CONFIG_GROUP );
-
-		//Logger.info( this, "Removing default idpConfig from cache id = " + idpConfig.getId() );
+			return ( idpConfig != null ) ? updated.withoutIdpConfig( idpConfig ) : updated;
+		});
 	}
 
 	@Override
@@ -551,100 +244,20 @@ public class SamlCacheImpl extends SamlCache
 	{
 		String tag = "removeIdpConfig( IdpConfig ) ";
 
-		idpConfig = checkNotNull( idpConfig, tag + "idpConfig is required." );
-
-		if ( Strings.isNullOrEmpty( idpConfig.getId() ) )
-		{
-			throw new IllegalArgumentException( tag + "idpConfig must have an id." );
-		}
-
-		Map<String, String> sites = idpConfig.getSites();
-
-		if ( sites != null && sites.size() > 0 )
-		{
-			this.removeSitesIdpConfigId( sites, idpConfig.getId() );
-		}
+		IdpConfig removedIdpConfig = this.checkIdpConfig( idpConfig, tag );
 
-		this.removeIdpConfig( idpConfig.getId() );
+		this.snapshot.updateAndGet( current -> current.withoutIdpConfig( removedIdpConfig ) );
 	}
 
-	@Override
-	protected void removeIdpConfig( String idpConfigId ) throws DotCacheException
+	private IdpConfig checkIdpConfig( IdpConfig idpConfig, String tag )
 	{
-		String tag = "removeIdpConfig( String ) ";
-
-		idpConfigId = checkNotNull( idpConfigId, tag + "idpConfigId is required." ).trim();
-
-		this.cache.remove( idpConfigId, IDP_CONFIG_GROUP );
-		decrementIdpCount();
-		this.removeIdpConfigIdFromIndex( idpConfigId );
-
-		//Logger.info( this, "Removing idpConfig from cache id = " + idpConfigId );
-	}
-
-	@SuppressWarnings( "unchecked" )
-	@Override
-	protected void removeIdpConfigIdFromIndex( String idpConfigId )
-	{
-		String tag = "removeIdpConfigFromIndex( String ) ";
-		List<String> idpIndex = null;
-
-		idpConfigId = checkNotNull( idpConfigId, tag + "idpConfigId is required." ).trim();
-
-		try
-		{
-			idpIndex = (List<String>) this.cache.get( INDEX, IDP_INDEX_GROUP );
-		}
-		catch ( DotCacheException dotCacheException )
-		{
-			//Logger.info( this, tag + "idpIndex not found in [" + IDP_INDEX_GROUP + "] cache group: [" + INDEX + "]. Creating new entry." );
-		}
-
-		if ( idpIndex == null )
-		{
-			idpIndex = new ArrayList<String>();
-		}
-
-		idpIndex.remove( idpConfigId );
-
-		this.cache.put( INDEX, idpIndex, IDP_INDEX_GROUP );
-
-		//Logger.info( this, "Removing idpConfig from cache index id = " + idpConfigId );
-	}
-
-	@Override
-	protected void removeSiteIdpConfigId( String site )
-	{
-		String tag = "removeSiteIdpConfigId( String ) ";
-
-		site = checkNotNull( site, tag + "site is required." ).trim();
-
-		this.cache.remove( site, SITES_TO_IDP_GROUP );
-
-		//Logger.info( this, "Removing site from cache site = " + site );
-	}
-
-	@Override
-	protected void removeSitesIdpConfigId( Map<String, String> sites, String idpConfigId )
-	{
-		String tag = "removeSitesIdpConfigId( Map<String, String>, String ) ";
-
-		// It's ok for sites to be null,
-		// but we need to check before processing
-		try
-		{
-			sites = checkNotNull( sites, tag + "sites is required." );
-
-			sites.forEach( ( identifier, hostname )->{
-				this.removeSiteIdpConfigId( identifier.trim() );
-				this.removeSiteIdpConfigId( hostname.trim() );
-			});
+		idpConfig = checkNotNull( idpConfig, tag + "idpConfig is required." );
 
-		}
-		catch ( Exception exception )
+		if ( Strings.isNullOrEmpty( idpConfig.getId() ) )
 		{
-			Logger.info( this, tag + "Error removing sites from cache." );
+			throw new IllegalArgumentException( tag + "idpConfig must have an id." );
 		}
 
+		return idpConfig;
 	}
 }
@@ -0,0 +1,182 @@
+package com.dotcms.plugin.saml.v3.cache;
+
+import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.config.IdpConfigIndex;
+import com.dotcms.plugin.saml.v3.config.SiteRoutingTable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of the SAML configuration: the configs loaded so far by id,
+ * the {@link IdpConfigIndex} of all the configs, the disabled sites and the
+ * default config id. Every modification returns a new snapshot, so
+ * {@link SamlCacheImpl} can publish it through a single reference and readers
+ * always see a consistent state without locking. The {@link SiteRoutingTable}
+ * of a snapshot is built on first use, from the index only, and replaced along
+ * with it.
+ */
+final class SamlConfigSnapshot
+{
+	static final SamlConfigSnapshot EMPTY = new SamlConfigSnapshot( Collections.emptyMap(), null, null, null, false );
+
+	private final Map<String, IdpConfig> idpConfigs;
+	private final IdpConfigIndex index;
+	private final Map<String, String> disabledSites;
+	private final String defaultIdpConfigId;
+	private final boolean loaded;
+	private volatile SiteRoutingTable routingTable;
+
+	private SamlConfigSnapshot( Map<String, IdpConfig> idpConfigs, IdpConfigIndex index, Map<String, String> disabledSites, String defaultIdpConfigId,
+			boolean loaded )
+	{
+		this.idpConfigs = idpConfigs;
+		this.index = index;
+		this.disabledSites = disabledSites;
+		this.defaultIdpConfigId = defaultIdpConfigId;
+		this.loaded = loaded;
+	}
+
+	/**
+	 * Returns a snapshot with all the configs, as read from the repository.
+	 * The default config and the disabled sites are left unknown, as a full
+	 * flush of the cache used to do.
+	 */
+	static SamlConfigSnapshot of( List<IdpConfig> idpConfigs )
+	{
+		Map<String, IdpConfig> newIdpConfigs = new LinkedHashMap<>();
+
+		for ( IdpConfig idpConfig : idpConfigs )
+		{
+			newIdpConfigs.put( idpConfig.getId(), idpConfig );
+		}
+
+		return new SamlConfigSnapshot( Collections.unmodifiableMap( newIdpConfigs ), IdpConfigIndex.of( idpConfigs ), null, null, true );
+	}
+
+	IdpConfig getIdpConfig( String idpConfigId )
+	{
+		return idpConfigs.get( idpConfigId );
+	}
+
+	List<IdpConfig> getIdpConfigs()
+	{
+		return new ArrayList<>( idpConfigs.values() );
+	}
+
+	/**
+	 * Returns the config id of the site, or null if it has none or the index
+	 * is unknown.
+	 */
+	String getSiteIdpConfigId( String site )
+	{
+		return ( index != null ) ? index.getSites().get( site ) : null;
+	}
+
+	Map<String, String> getDisabledSites()
+	{
+		return disabledSites;
+	}
+
+	String getDefaultIdpConfigId()
+	{
+		return defaultIdpConfigId;
+	}
+
+	/**
+	 * Returns the routing table, or null unless the snapshot holds the index,
+	 * the default config id and the disabled sites.
+	 */
+	SiteRoutingTable getRoutingTable()
+	{
+		if ( index == null || defaultIdpConfigId == null || disabledSites == null )
+		{
+			return null;
+		}
+
+		SiteRoutingTable table = this.routingTable;
+
+		if ( table == null )
+		{
+			table = SiteRoutingTable.of( index, defaultIdpConfigId, disabledSites );
+			this.routingTable = table;
+		}
+
+		return table;
+	}
+
+	/**
+	 * True if the snapshot holds all the configs, false if it only holds the
+	 * ones loaded one by one.
+	 */
+	boolean isLoaded()
+	{
+		return loaded;
+	}
+
+	/**
+	 * Returns a snapshot with the index, the default config id and the
+	 * disabled sites, keeping the loaded configs that are still indexed. A
+	 * default id that is not indexed is left out.
+	 */
+	SamlConfigSnapshot withIndex( IdpConfigIndex newIndex, String newDefaultIdpConfigId, Map<String, String> newDisabledSites )
+	{
+		Map<String, IdpConfig> newIdpConfigs = new LinkedHashMap<>( idpConfigs );
+
+		newIdpConfigs.keySet().retainAll( newIndex.getIdpConfigIds() );
+
+		String indexedDefaultIdpConfigId = ( newDefaultIdpConfigId != null && newIndex.getIdpConfigIds().contains( newDefaultIdpConfigId ) ) ? newDefaultIdpConfigId : "";
+		boolean allLoaded = newIdpConfigs.keySet().containsAll( newIndex.getIdpConfigIds() );
+
+		return new SamlConfigSnapshot( Collections.unmodifiableMap( newIdpConfigs ), newIndex,
+				trim( ( newDisabledSites != null ) ? newDisabledSites : Collections.emptyMap() ), indexedDefaultIdpConfigId, allLoaded );
+	}
+
+	SamlConfigSnapshot withIdpConfig( IdpConfig idpConfig )
+	{
+		Map<String, IdpConfig> newIdpConfigs = new LinkedHashMap<>( idpConfigs );
+
+		newIdpConfigs.remove( idpConfig.getId() );
+		newIdpConfigs.put( idpConfig.getId(), idpConfig );
+
+		return new SamlConfigSnapshot( Collections.unmodifiableMap( newIdpConfigs ), ( index != null ) ? index.withIdpConfig( idpConfig ) : null, disabledSites,
+				defaultIdpConfigId, loaded );
+	}
+
+	SamlConfigSnapshot withoutIdpConfig( IdpConfig idpConfig )
+	{
+		Map<String, IdpConfig> newIdpConfigs = new LinkedHashMap<>( idpConfigs );
+
+		newIdpConfigs.remove( idpConfig.getId() );
+
+		return new SamlConfigSnapshot( Collections.unmodifiableMap( newIdpConfigs ), ( index != null ) ? index.withoutIdpConfig( idpConfig.getId() ) : null,
+				disabledSites, defaultIdpConfigId, loaded );
+	}
+
+	SamlConfigSnapshot withSiteIdpConfigId( String site, String idpConfigId )
+	{
+		return ( index != null ) ? new SamlConfigSnapshot( idpConfigs, index.withSite( site, idpConfigId ), disabledSites, defaultIdpConfigId, loaded ) : this;
+	}
+
+	SamlConfigSnapshot withDefaultIdpConfigId( String idpConfigId )
+	{
+		return new SamlConfigSnapshot( idpConfigs, index, disabledSites, idpConfigId, loaded );
+	}
+
+	SamlConfigSnapshot withDisabledSites( Map<String, String> newDisabledSites )
+	{
+		return new SamlConfigSnapshot( idpConfigs, index, trim( newDisabledSites ), defaultIdpConfigId, loaded );
+	}
+
+	private static Map<String, String> trim( Map<String, String> sites )
+	{
+		Map<String, String> trimmed = new LinkedHashMap<>();
+
+		sites.forEach( ( identifier, hostname ) -> trimmed.put( identifier.trim(), hostname.trim() ) );
+
+		return Collections.unmodifiableMap( trimmed );
+	}
+}
@@ -0,0 +1,588 @@
+package com.dotcms.plugin.saml.v3.config;
+
+import com.dotcms.plugin.saml.v3.exception.IdpConfigVersionConflictException;
+
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+import com.dotmarketing.util.json.JSONException;
+import com.dotmarketing.util.json.JSONObject;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * {@link IdpConfigRepository} on the dotCMS datasource.
+ * <p>
+ * Configs are stored as JSON (the same form as the config files) in
+ * <code>saml_idp_config</code>, with whether the config is enabled;
+ * <code>saml_idp_site</code> indexes the site
+ * identifiers and hostnames of each config, so the {@link IdpConfigIndex} is
+ * read without parsing any config, and <code>saml_idp_setting</code> keeps the default config id and
+ * the disabled sites. Every write runs in its own transaction, a config is
+ * only updated if its <code>config_version</code> is the expected one, and
+ * changes the <code>config_revision</code> setting the other nodes poll
+ * ({@link #getRevision()}).
+ * <p>
+ * The tables are created on first use and, if they are empty, filled with the
+ * configs of the {@link FileIdpConfigRepository}. The import runs in one
+ * transaction with its <code>files_imported</code> setting, so it is retried
+ * until it completes and runs on one node only.
+ */
+public class DatabaseIdpConfigRepository implements IdpConfigRepository
+{
+	private static final String DEFAULT_IDP_CONFIG_SETTING = "default_idp_config";
+	private static final String DISABLED_SITES_SETTING = "disabled_sites";
+	private static final String FILES_IMPORTED_SETTING = "files_imported";
+	private static final String REVISION_SETTING = "config_revision";
+
+	private volatile boolean schemaReady = false;
+
+	@Override
+	public IdpConfig findById( String idpConfigId ) throws IOException, JSONException
+	{
+		String json = this.queryString( "SELECT config_json FROM saml_idp_config WHERE id = ?", idpConfigId );
+
+		return ( json != null ) ? IdpJsonTransformer.jsonToIdp( new JSONObject( json ) ) : null;
+	}
+
+	@Override
+	public IdpConfigIndex findIndex() throws IOException, JSONException
+	{
+		final List<String> idpConfigIds = new ArrayList<>();
+		final Set<String> enabledIdpConfigIds = new HashSet<>();
+		final Map<String, String> sites = new HashMap<>();
+
+		try ( Connection connection = this.getConnection() )
+		{
+			try ( PreparedStatement statement = connection.prepareStatement( "SELECT id, enabled FROM saml_idp_config ORDER BY sort_order" );
+					ResultSet resultSet = statement.executeQuery() )
+			{
+				while ( resultSet.next() )
+				{
+					idpConfigIds.add( resultSet.getString( 1 ) );
+
+					if ( resultSet.getInt( 2 ) != 0 )
+					{
+						enabledIdpConfigIds.add( resultSet.getString( 1 ) );
+					}
+				}
+			}
+
+			try ( PreparedStatement statement = connection.prepareStatement( "SELECT site, idp_config_id FROM saml_idp_site" );
+					ResultSet resultSet = statement.executeQuery() )
+			{
+				while ( resultSet.next() )
+				{
+					sites.put( resultSet.getString( 1 ), resultSet.getString( 2 ) );
+				}
+			}
+		}
+		catch ( SQLException exception )
+		{
+			throw new IOException( "Could not read the SAML config index.", exception );
+		}
+
+		return new IdpConfigIndex( idpConfigIds, enabledIdpConfigIds, sites );
+	}
+
+	@Override
+	public List<String> findAllIds() throws IOException, JSONException
+	{
+		List<String> idpConfigIds = new ArrayList<>();
+
+		try ( Connection connection = this.getConnection();
+				PreparedStatement statement = connection.prepareStatement( "SELECT id FROM saml_idp_config ORDER BY sort_order" );
+				ResultSet resultSet = statement.executeQuery() )
+		{
+			while ( resultSet.next() )
+			{
+				idpConfigIds.add( resultSet.getString( 1 ) );
+			}
+		}
+		catch ( SQLException exception )
+		{
+			throw new IOException( "Could not read the SAML config ids.", exception );
+		}
+
+		return idpConfigIds;
+	}
+
+	@Override
+	public List<IdpConfig> findAll() throws IOException, JSONException
+	{
+		List<IdpConfig> idpConfigs = new ArrayList<>();
+
+		try ( Connection connection = this.getConnection();
+				PreparedStatement statement = connection.prepareStatement( "SELECT config_json FROM saml_idp_config ORDER BY sort_order" );
+				ResultSet resultSet = statement.executeQuery() )
+		{
+			while ( resultSet.next() )
+			{
+				idpConfigs.add( IdpJsonTransformer.jsonToIdp( new JSONObject( resultSet.getString( 1 ) ) ) );
+			}
+		}
+		catch ( SQLException exception )
+		{
+			throw new IOException( "Could not read the SAML configs.", exception );
+		}
+
+		return idpConfigs;
+	}
+
+	@Override
+	public String getDefaultIdpConfigId() throws IOException, JSONException
+	{
+		String idpConfigId = this.getSetting( DEFAULT_IDP_CONFIG_SETTING );
+
+		return ( idpConfigId != null ) ? idpConfigId : "";
+	}
+
+	@Override
+	public Map<String, String> getDisabledSites() throws IOException, JSONException
+	{
+		String json = this.getSetting( DISABLED_SITES_SETTING );
+
+		return SiteJsonTransformer.getMapFromJsonObject( new JSONObject( UtilMethods.isSet( json ) ? json : "{}" ) );
+	}
+
+	@Override
+	public void save( IdpConfig idpConfig, long expectedVersion ) throws IOException, JSONException
+	{
+		final long newVersion = expectedVersion + 1;
+		final String json = IdpJsonTransformer.idpToJson( idpConfig ).put( "version", newVersion ).toString();
+
+		this.inTransaction( connection -> this.write( connection, idpConfig, expectedVersion, json ) );
+
+		idpConfig.setVersion( newVersion );
+	}
+
+	@Override
+	public void delete( String idpConfigId ) throws IOException, JSONException
+	{
+		final boolean isDefault = idpConfigId.equals( this.getDefaultIdpConfigId() );
+
+		this.inTransaction( connection -> {
+			this.update( connection, "DELETE FROM saml_idp_site WHERE idp_config_id = ?", idpConfigId );
+			this.update( connection, "DELETE FROM saml_idp_config WHERE id = ?", idpConfigId );
+
+			if ( isDefault )
+			{
+				this.putSetting( connection, DEFAULT_IDP_CONFIG_SETTING, null );
+			}
+		});
+	}
+
+	@Override
+	public void setDefaultIdpConfigId( String idpConfigId ) throws IOException, JSONException
+	{
+		this.inTransaction( connection -> this.putSetting( connection, DEFAULT_IDP_CONFIG_SETTING, idpConfigId ) );
+	}
+
+	@Override
+	public void setDisabledSites( Map<String, String> disabledSites ) throws IOException, JSONException
+	{
+		final String json = SiteJsonTransformer.getJsonObjecFromtMap( disabledSites ).toString();
+
+		this.inTransaction( connection -> this.putSetting( connection, DISABLED_SITES_SETTING, json ) );
+	}
+
+	@Override
+	public String getRevision() throws IOException
+	{
+		return this.getSetting( REVISION_SETTING );
+	}
+
+	private void write( final Connection connection, final IdpConfig idpConfig, final long expectedVersion, final String json ) throws SQLException
+	{
+		int updated;
+
+		try ( PreparedStatement statement = connection.prepareStatement( "UPDATE saml_idp_config SET idp_name = ?, config_json = ?, config_version = ?, enabled = ? "
+				+ "WHERE id = ? AND config_version = ?" ) )
+		{
+			statement.setString( 1, idpConfig.getIdpName() );
+			statement.setString( 2, json );
+			statement.setLong( 3, expectedVersion + 1 );
+			statement.setInt( 4, idpConfig.isEnabled() ? 1 : 0 );
+			statement.setString( 5, idpConfig.getId() );
+			statement.setLong( 6, expectedVersion );
+			updated = statement.executeUpdate();
+		}
+
+		if ( updated == 0 )
+		{
+			// Either someone else saved it, or it is new and must be saved from version 0.
+			if ( expectedVersion != 0 || this.exists( connection, idpConfig.getId() ) )
+			{
+				throw new IdpConfigVersionConflictException( idpConfig.getId(), expectedVersion );
+			}
+
+			try ( PreparedStatement statement = connection.prepareStatement( "INSERT INTO saml_idp_config (id, idp_name, config_json, config_version, enabled, sort_order) "
+					+ "SELECT ?, ?, ?, ?, ?, COALESCE(MAX(sort_order), 0) + 1 FROM saml_idp_config" ) )
+			{
+				statement.setString( 1, idpConfig.getId() );
+				statement.setString( 2, idpConfig.getIdpName() );
+				statement.setString( 3, json );
+				statement.setLong( 4, expectedVersion + 1 );
+				statement.setInt( 5, idpConfig.isEnabled() ? 1 : 0 );
+				statement.executeUpdate();
+			}
+		}
+
+		this.saveSites( connection, idpConfig );
+	}
+
+	private boolean exists( final Connection connection, final String idpConfigId ) throws SQLException
+	{
+		return this.hasRow( connection, "SELECT 1 FROM saml_idp_config WHERE id = ?", idpConfigId );
+	}
+
+	private boolean hasRow( final Connection connection, final String sql, final String... parameters ) throws SQLException
+	{
+		try ( PreparedStatement statement = connection.prepareStatement( sql ) )
+		{
+			for ( int i = 0; i < parameters.length; i++ )
+			{
+				statement.setString( i + 1, parameters[ i ] );
+			}
+
+			try ( ResultSet resultSet = statement.executeQuery() )
+			{
+				return resultSet.next();
+			}
+		}
+	}
+
+	private void saveSites( final Connection connection, final IdpConfig idpConfig ) throws SQLException
+	{
+		final Set<String> sites = new LinkedHashSet<>();
+
+		if ( UtilMethods.isSet( idpConfig.getSites() ) )
+		{
+			idpConfig.getSites().forEach( ( identifier, hostname ) -> {
+				sites.add( identifier.trim() );
+				sites.add( hostname.trim() );
+			});
+		}
+
+		this.update( connection, "DELETE FROM saml_idp_site WHERE idp_config_id = ?", idpConfig.getId() );
+
+		for ( String site : sites )
+		{
+			// A site belongs to one config, the last one saved.
+			this.update( connection, "DELETE FROM saml_idp_site WHERE site = ?", site );
+			this.update( connection, "INSERT INTO saml_idp_site (site, idp_config_id) VALUES (?, ?)", site, idpConfig.getId() );
+		}
+	}
+
+	private void putSetting( final Connection connection, final String key, final String value ) throws SQLException
+	{
+		this.update( connection, "DELETE FROM saml_idp_setting WHERE setting_key = ?", key );
+
+		if ( UtilMethods.isSet( value ) )
+		{
+			this.update( connection, "INSERT INTO saml_idp_setting (setting_key, setting_value) VALUES (?, ?)", key, value );
+		}
+	}
+
+	// Updated in place, so concurrent writes wait on the row instead of failing on its key.
+	private void changeRevision( final Connection connection ) throws SQLException
+	{
+		final String revision = UUID.randomUUID().toString();
+
+		if ( this.update( connection, "UPDATE saml_idp_setting SET setting_value = ? WHERE setting_key = ?", revision, REVISION_SETTING ) == 0 )
+		{
+			this.update( connection, "INSERT INTO saml_idp_setting (setting_key, setting_value) VALUES (?, ?)", REVISION_SETTING, revision );
+		}
+	}
+
+	private String getSetting( final String key ) throws IOException
+	{
+		return this.queryString( "SELECT setting_value FROM saml_idp_setting WHERE setting_key = ?", key );
+	}
+
+	private String queryString( final String sql, final String parameter ) throws IOException
+	{
+		try ( Connection connection = this.getConnection(); PreparedStatement statement = connection.prepareStatement( sql ) )
+		{
+			statement.setString( 1, parameter );
+
+			try ( ResultSet resultSet = statement.executeQuery() )
+			{
+				return resultSet.next() ? resultSet.getString( 1 ) : null;
+			}
+		}
+		catch ( SQLException exception )
+		{
+			throw new IOException( "Could not query the SAML configs.", exception );
+		}
+	}
+
+	private int update( final Connection connection, final String sql, final String... parameters ) throws SQLException
+	{
+		try ( PreparedStatement statement = connection.prepareStatement( sql ) )
+		{
+			for ( int i = 0; i < parameters.length; i++ )
+			{
+				statement.setString( i + 1, parameters[ i ] );
+			}
+
+			return statement.executeUpdate();
+		}
+	}
+
+	private void inTransaction( final Transaction transaction ) throws IOException, JSONException
+	{
+		try ( Connection connection = this.getConnection() )
+		{
+			this.runInTransaction( connection, transactionConnection -> {
+				transaction.run( transactionConnection );
+				this.changeRevision( transactionConnection );
+			});
+		}
+		catch ( SQLException exception )
+		{
+			throw new IOException( "Could not write the SAML configs.", exception );
+		}
+	}
+
+	private void runInTransaction( final Connection connection, final Transaction transaction ) throws SQLException
+	{
+		connection.setAutoCommit( false );
+
+		try
+		{
+			transaction.run( connection );
+			connection.commit();
+		}
+		catch ( SQLException | RuntimeException exception )
+		{
+			try
+			{
+				connection.rollback();
+			}
+			catch ( SQLException rollbackException )
+			{
+				exception.addSuppressed( rollbackException );
+			}
+
+			throw exception;
+		}
+	}
+
+	private Connection getConnection() throws SQLException, IOException
+	{
+		this.ensureSchema();
+
+		return DbConnectionFactory.getDataSource().getConnection();
+	}
+
+	private void ensureSchema() throws IOException
+	{
+		if ( this.schemaReady )
+		{
+			return;
+		}
+
+		synchronized ( this )
+		{
+			if ( this.schemaReady )
+			{
+				return;
+			}
+
+			final String textType = DbConnectionFactory.isOracle() ? "nclob" : DbConnectionFactory.isMsSql() ? "nvarchar(max)" : "text";
+			final String longType = DbConnectionFactory.isOracle() ? "number(19)" : "bigint";
+
+			try ( Connection connection = DbConnectionFactory.getDataSource().getConnection() )
+			{
+				connection.setAutoCommit( true );
+
+				this.createTable( connection, "saml_idp_config", "CREATE TABLE saml_idp_config (id varchar(64) NOT NULL PRIMARY KEY, idp_name varchar(255), "
+						+ "config_json " + textType + " NOT NULL, config_version " + longType + " NOT NULL, enabled integer NOT NULL, sort_order integer NOT NULL)" );
+				this.createTable( connection, "saml_idp_site", "CREATE TABLE saml_idp_site (site varchar(255) NOT NULL PRIMARY KEY, idp_config_id varchar(64) NOT NULL)" );
+				this.createIndex( connection, "saml_idp_site", "idx_saml_idp_site_config", "CREATE INDEX idx_saml_idp_site_config ON saml_idp_site (idp_config_id)" );
+				this.createTable( connection, "saml_idp_setting", "CREATE TABLE saml_idp_setting (setting_key varchar(64) NOT NULL PRIMARY KEY, setting_value " + textType + ")" );
+
+				this.importFiles( connection );
+			}
+			catch ( SQLException exception )
+			{
+				throw new IOException( "Could not create the SAML config tables.", exception );
+			}
+
+			this.schemaReady = true;
+		}
+	}
+
+	private void createTable( final Connection connection, final String table, final String sql ) throws SQLException
+	{
+		if ( this.tableExists( connection, table ) )
+		{
+			return;
+		}
+
+		try ( Statement statement = connection.createStatement() )
+		{
+			statement.executeUpdate( sql );
+			Logger.info( this, "Created the SAML config table: " + table );
+		}
+		catch ( SQLException exception )
+		{
+			// Another node may have created it first.
+			if ( !this.tableExists( connection, table ) )
+			{
+				throw exception;
+			}
+		}
+	}
+
+	private void createIndex( final Connection connection, final String table, final String index, final String sql ) throws SQLException
+	{
+		if ( this.indexExists( connection, table, index ) )
+		{
+			return;
+		}
+
+		try ( Statement statement = connection.createStatement() )
+		{
+			statement.executeUpdate( sql );
+		}
+		catch ( SQLException exception )
+		{
+			// Another node may have created it first.
+			if ( !this.indexExists( connection, table, index ) )
+			{
+				throw exception;
+			}
+		}
+	}
+
+	private boolean tableExists( final Connection connection, final String table ) throws SQLException
+	{
+		final DatabaseMetaData metaData = connection.getMetaData();
+
+		for ( String name : new String[] { table, table.toUpperCase() } )
+		{
+			try ( ResultSet resultSet = metaData.getTables( null, null, name, new String[] { "TABLE" } ) )
+			{
+				if ( resultSet.next() )
+				{
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private boolean indexExists( final Connection connection, final String table, final String index ) throws SQLException
+	{
+		final DatabaseMetaData metaData = connection.getMetaData();
+
+		for ( String name : new String[] { table, table.toUpperCase() } )
+		{
+			try ( ResultSet resultSet = metaData.getIndexInfo( null, null, name, false, true ) )
+			{
+				while ( resultSet.next() )
+				{
+					if ( index.equalsIgnoreCase( resultSet.getString( "INDEX_NAME" ) ) )
+					{
+						return true;
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Imports the config files if it was not done yet. The marker is
+	 * inserted first, so a node importing at the same time waits on its key
+	 * and then fails, and the tables are only filled if they are empty.
+	 */
+	private void importFiles( final Connection connection ) throws IOException, SQLException
+	{
+		final String marker = "SELECT 1 FROM saml_idp_setting WHERE setting_key = ?";
+
+		if ( this.hasRow( connection, marker, FILES_IMPORTED_SETTING ) )
+		{
+			return;
+		}
+
+		final Map<IdpConfig, String> idpConfigs = new LinkedHashMap<>();
+		final String defaultIdpConfigId;
+		final String disabledSites;
+
+		try
+		{
+			final FileIdpConfigRepository files = new FileIdpConfigRepository();
+
+			for ( IdpConfig idpConfig : files.findAll() )
+			{
+				// The versions start over in the database.
+				idpConfigs.put( idpConfig, IdpJsonTransformer.idpToJson( idpConfig ).put( "version", 1 ).toString() );
+			}
+
+			defaultIdpConfigId = files.getDefaultIdpConfigId();
+			disabledSites = SiteJsonTransformer.getJsonObjecFromtMap( files.getDisabledSites() ).toString();
+		}
+		catch ( JSONException exception )
+		{
+			throw new IOException( "Could not read the SAML config files.", exception );
+		}
+
+		try
+		{
+			this.runInTransaction( connection, transaction -> {
+				this.update( transaction, "INSERT INTO saml_idp_setting (setting_key, setting_value) VALUES (?, ?)",
+						FILES_IMPORTED_SETTING, IdpConfigFileHelper.getIdpfilePath() );
+
+				if ( this.hasRow( transaction, "SELECT 1 FROM saml_idp_config" ) )
+				{
+					return;
+				}
+
+				for ( Map.Entry<IdpConfig, String> idpConfig : idpConfigs.entrySet() )
+				{
+					this.write( transaction, idpConfig.getKey(), 0, idpConfig.getValue() );
+				}
+
+				this.putSetting( transaction, DEFAULT_IDP_CONFIG_SETTING, defaultIdpConfigId );
+				this.putSetting( transaction, DISABLED_SITES_SETTING, disabledSites );
+				this.changeRevision( transaction );
+
+				Logger.info( this, "Imported the SAML configs from: " + IdpConfigFileHelper.getIdpfilePath() );
+			});
+		}
+		catch ( SQLException exception )
+		{
+			// Another node imported them first.
+			if ( !this.hasRow( connection, marker, FILES_IMPORTED_SETTING ) )
+			{
+				throw exception;
+			}
+		}
+	}
+
+	@FunctionalInterface
+	private interface Transaction
+	{
+		void run( Connection connection ) throws SQLException;
+	}
+}
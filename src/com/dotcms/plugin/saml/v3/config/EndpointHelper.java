@@ -65,9 +65,7 @@ public class EndpointHelper
 	 */
 	public static String[] getAccessFilterArray( IdpConfig idpConfig )
 	{
-		String accessFilterValues = DotsamlPropertiesService.getOptionString( idpConfig, DotsamlPropertyName.DOT_SAML_ACCESS_FILTER_VALUES );
-
-		return ( UtilMethods.isSet( accessFilterValues ) ) ? accessFilterValues.split( "," ) : null;
+		return splitPaths( DotsamlPropertiesService.getOptionString( idpConfig, DotsamlPropertyName.DOT_SAML_ACCESS_FILTER_VALUES ) );
 	}
 
 	/**
@@ -78,10 +76,7 @@ public class EndpointHelper
 	 */
 	public static String[] getLogoutPathArray( IdpConfig idpConfig )
 	{
-		String logoutPathValues = DotsamlPropertiesService.getOptionString( idpConfig, DotsamlPropertyName.DOT_SAML_LOGOUT_PATH_VALUES );
-
-
-		return ( UtilMethods.isSet( logoutPathValues ) ) ? logoutPathValues.split( "," ) : null;
+		return splitPaths( DotsamlPropertiesService.getOptionString( idpConfig, DotsamlPropertyName.DOT_SAML_LOGOUT_PATH_VALUES ) );
 	}
 
 	/**
@@ -93,11 +88,33 @@ public class EndpointHelper
 	 */
 	public static String[] getIncludePathArray( IdpConfig idpConfig )
 	{
-		String accessFilterValues = DotsamlPropertiesService.getOptionString( idpConfig, DotsamlPropertyName.DOT_SAML_INCLUDE_PATH_VALUES);
-
-		return ( UtilMethods.isSet( accessFilterValues ) ) ? accessFilterValues.split( "," ) : null;
+		return splitPaths( DotsamlPropertiesService.getOptionString( idpConfig, DotsamlPropertyName.DOT_SAML_INCLUDE_PATH_VALUES ) );
 	}
 	
+	/**
+	 * Returns the access filter, include and logout paths compiled in a
+	 * {@link IdpPathMatcher}. It is compiled along with the
+	 * {@link IdpConfig#getProfile()} of the idpConfig.
+	 * 
+	 * @param idpConfig IdpConfig
+	 * @return IdpPathMatcher
+	 */
+	public static IdpPathMatcher getPathMatcher( IdpConfig idpConfig )
+	{
+		return idpConfig.getProfile().getPathMatcher();
+	}
+
+	/**
+	 * Splits a comma separated list of paths, null if there is no value.
+	 * 
+	 * @param paths String
+	 * @return String []
+	 */
+	public static String[] splitPaths( String paths )
+	{
+		return ( UtilMethods.isSet( paths ) ) ? paths.split( "," ) : null;
+	}
+
 	/*
 	 * Utility to trim whitespace and remove the dash at the end if it exists.
 	 */
@@ -0,0 +1,79 @@
+package com.dotcms.plugin.saml.v3.config;
+
+import com.dotmarketing.util.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Default {@link IdpConfigRepository}: one file per config plus a manifest in
+ * the saml asset directory, see {@link IdpConfigStore}. Saves made at about
+ * the same time are committed together, see {@link IdpConfigGroupCommit}.
+ */
+public class FileIdpConfigRepository implements IdpConfigRepository
+{
+	private final File idpConfigFile = new File( IdpConfigFileHelper.getIdpfilePath() );
+	private final IdpConfigGroupCommit groupCommit = new IdpConfigGroupCommit( IdpConfigStore.getInstance( idpConfigFile ) );
+
+	@Override
+	public IdpConfig findById( String idpConfigId ) throws IOException, JSONException
+	{
+		return IdpConfigWriterReader.readIdpConfig( idpConfigFile, idpConfigId );
+	}
+
+	@Override
+	public IdpConfigIndex findIndex() throws IOException, JSONException
+	{
+		return IdpConfigWriterReader.readIdpConfigIndex( idpConfigFile );
+	}
+
+	@Override
+	public List<String> findAllIds() throws IOException, JSONException
+	{
+		return IdpConfigWriterReader.readIdpConfigIds( idpConfigFile );
+	}
+
+	@Override
+	public List<IdpConfig> findAll() throws IOException, JSONException
+	{
+		return IdpConfigWriterReader.readIdpConfigs( idpConfigFile );
+	}
+
+	@Override
+	public String getDefaultIdpConfigId() throws IOException, JSONException
+	{
+		return IdpConfigWriterReader.readDefaultIdpConfigId( idpConfigFile );
+	}
+
+	@Override
+	public Map<String, String> getDisabledSites() throws IOException, JSONException
+	{
+		return IdpConfigWriterReader.readDisabledSiteIds( idpConfigFile );
+	}
+
+	@Override
+	public void save( IdpConfig idpConfig, long expectedVersion ) throws IOException, JSONException
+	{
+		this.groupCommit.save( idpConfig, expectedVersion );
+	}
+
+	@Override
+	public void delete( String idpConfigId ) throws IOException, JSONException
+	{
+		IdpConfigWriterReader.deleteIdpConfig( idpConfigId, idpConfigFile.getPath() );
+	}
+
+	@Override
+	public void setDefaultIdpConfigId( String idpConfigId ) throws IOException, JSONException
+	{
+		IdpConfigWriterReader.writeDefaultIdpConfigId( idpConfigId, idpConfigFile.getPath() );
+	}
+
+	@Override
+	public void setDisabledSites( Map<String, String> disabledSites ) throws IOException, JSONException
+	{
+		IdpConfigWriterReader.writeDisabledSIteIds( disabledSites, idpConfigFile.getPath() );
+	}
+}
@@ -1,11 +1,14 @@
 package com.dotcms.plugin.saml.v3.config;
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
+import com.dotcms.plugin.saml.v3.parameters.IdpConfigProfile;
+
 public class IdpConfig
 {
 	private String id;
@@ -19,6 +22,8 @@ public class IdpConfig
 	private String signatureValidationType;
 	private Properties optionalProperties;
 	private Map<String, String> sites;
+	private long version;
+	private transient volatile IdpConfigProfile profile;
 
 	public IdpConfig()
 	{
@@ -32,6 +37,33 @@ public class IdpConfig
 		this.optionalProperties = new Properties();
 	}
 
+	/**
+	 * Copies the config, so it can be edited without changing the one shared
+	 * by the cache until the edit is saved.
+	 * 
+	 * @param idpConfig IdpConfig
+	 */
+	public IdpConfig( IdpConfig idpConfig )
+	{
+		this.id = idpConfig.id;
+		this.idpName = idpConfig.idpName;
+		this.enabled = idpConfig.enabled;
+		this.sPIssuerURL = idpConfig.sPIssuerURL;
+		this.sPEndpointHostname = idpConfig.sPEndpointHostname;
+		this.privateKey = idpConfig.privateKey;
+		this.publicCert = idpConfig.publicCert;
+		this.idPMetadataFile = idpConfig.idPMetadataFile;
+		this.signatureValidationType = idpConfig.signatureValidationType;
+		this.optionalProperties = new Properties();
+		this.sites = ( idpConfig.sites != null ) ? new HashMap<>( idpConfig.sites ) : null;
+		this.version = idpConfig.version;
+
+		if ( idpConfig.optionalProperties != null )
+		{
+			this.optionalProperties.putAll( idpConfig.optionalProperties );
+		}
+	}
+
 	@Override
 	public boolean equals( Object object )
 	{
@@ -64,6 +96,26 @@ public class IdpConfig
 		return idpName;
 	}
 
+	/**
+	 * Returns the optional properties already merged with the defaults and
+	 * parsed. It is built on the first call and rebuilt after the optional
+	 * properties are replaced or the defaults change.
+	 * 
+	 * @return IdpConfigProfile
+	 */
+	public IdpConfigProfile getProfile()
+	{
+		IdpConfigProfile currentProfile = this.profile;
+
+		if ( currentProfile == null || !currentProfile.isCurrent() )
+		{
+			currentProfile = IdpConfigProfile.of( this );
+			this.profile = currentProfile;
+		}
+
+		return currentProfile;
+	}
+
 	public Properties getOptionalProperties()
 	{
 		return optionalProperties;
@@ -110,6 +162,18 @@ public class IdpConfig
 		return Objects.hash( id );
 	}
 
+	/**
+	 * Returns the version of the stored config, it is incremented on every
+	 * save and a save is only accepted if it was made from the stored
+	 * version.
+	 * 
+	 * @return long
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
 	public boolean isEnabled()
 	{
 		return enabled;
@@ -138,6 +202,7 @@ public class IdpConfig
 	public void setOptionalProperties( Properties optionalProperties )
 	{
 		this.optionalProperties = optionalProperties;
+		this.profile = null;
 	}
 
 	public void setPrivateKey( File privateKey )
@@ -189,6 +254,11 @@ public class IdpConfig
 		return getSearchable().toLowerCase().contains(string.trim().toLowerCase());
 	}
 
+	public void setVersion( long version )
+	{
+		this.version = version;
+	}
+
 	public void setSpEndpointHostname( String sPEndpointHostname )
 	{
 		this.sPEndpointHostname = sPEndpointHostname;
@@ -213,6 +283,7 @@ public class IdpConfig
                 ", signatureValidationType='" + signatureValidationType + '\'' +
                 ", optionalProperties=" + optionalProperties +
                 ", sites=" + sites +
+                ", version=" + version +
                 '}';
     }
 
@@ -8,6 +8,7 @@ import com.liferay.util.FileUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -97,4 +98,35 @@ public class IdpConfigFileHelper implements Serializable
 	{
 		return this.writeFile( sourceFile, METADATA_PARENT_PATH, fileName );
 	}
+
+	/**
+	 * Moves the source file to a temp file next to the target, so it can be
+	 * renamed over the target with {@link #commitFile(File, File)} or deleted.
+	 */
+	protected File stageFile( File sourceFile, File targetFile ) throws IOException
+	{
+		final File parent = targetFile.getAbsoluteFile().getParentFile();
+
+		parent.mkdirs();
+
+		final Path stagedPath = Files.createTempFile( parent.toPath(), targetFile.getName(), ".tmp" );
+
+		return Files.move( sourceFile.toPath(), stagedPath, StandardCopyOption.REPLACE_EXISTING ).toFile();
+	}
+
+	/**
+	 * Renames the staged file over the target, atomically if the file system
+	 * supports it.
+	 */
+	protected void commitFile( File stagedFile, File targetFile ) throws IOException
+	{
+		try
+		{
+			Files.move( stagedFile.toPath(), targetFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+		}
+		catch ( AtomicMoveNotSupportedException exception )
+		{
+			Files.move( stagedFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		}
+	}
 }
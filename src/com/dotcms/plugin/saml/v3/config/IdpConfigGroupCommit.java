@@ -0,0 +1,165 @@
+package com.dotcms.plugin.saml.v3.config;
+
+import com.dotcms.plugin.saml.v3.exception.IdpConfigVersionConflictException;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.json.JSONException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Batches the config saves made at about the same time into a single commit
+ * of the {@link IdpConfigStore}.
+ * <p>
+ * The first save waits
+ * {@link DotSamlConstants#DOT_SAML_IDP_CONFIG_WRITE_WINDOW_MILLIS} for other
+ * saves and then commits all of them; every save returns once its config is
+ * written, or throws {@link IdpConfigVersionConflictException} if it was
+ * made from a version that is not the stored one, or the exception its file
+ * could not be written with. A save that fails does not fail the others.
+ */
+class IdpConfigGroupCommit
+{
+	private final IdpConfigStore store;
+	private final long windowMillis;
+
+	private List<PendingWrite> pendingWrites = new ArrayList<>();
+	private boolean committing = false;
+
+	IdpConfigGroupCommit( final IdpConfigStore store )
+	{
+		this.store = store;
+		this.windowMillis = Config.getIntProperty( DotSamlConstants.DOT_SAML_IDP_CONFIG_WRITE_WINDOW_MILLIS, DotSamlConstants.DOT_SAML_IDP_CONFIG_WRITE_WINDOW_MILLIS_DEFAULT_VALUE );
+	}
+
+	/**
+	 * Saves the config if the stored version is the expected one, blocking
+	 * until it is committed.
+	 */
+	void save( final IdpConfig idpConfig, final long expectedVersion ) throws IOException, JSONException
+	{
+		final PendingWrite pendingWrite = new PendingWrite( idpConfig, expectedVersion );
+		final boolean leader;
+
+		synchronized ( this )
+		{
+			this.pendingWrites.add( pendingWrite );
+			leader = !this.committing;
+			this.committing = true;
+		}
+
+		if ( leader )
+		{
+			this.waitForOtherWrites();
+			this.commit();
+		}
+
+		this.await( pendingWrite );
+	}
+
+	private void waitForOtherWrites()
+	{
+		if ( this.windowMillis <= 0 )
+		{
+			return;
+		}
+
+		try
+		{
+			Thread.sleep( this.windowMillis );
+		}
+		catch ( InterruptedException exception )
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void commit()
+	{
+		final List<PendingWrite> batch;
+
+		synchronized ( this )
+		{
+			batch = this.pendingWrites;
+			this.pendingWrites = new ArrayList<>();
+			this.committing = false;
+		}
+
+		final List<IdpConfig> idpConfigs = new ArrayList<>( batch.size() );
+		final List<Long> expectedVersions = new ArrayList<>( batch.size() );
+
+		for ( PendingWrite pendingWrite : batch )
+		{
+			idpConfigs.add( pendingWrite.idpConfig );
+			expectedVersions.add( pendingWrite.expectedVersion );
+		}
+
+		try
+		{
+			final List<Exception> failures = this.store.writeIdpConfigs( idpConfigs, expectedVersions );
+
+			for ( int i = 0; i < batch.size(); i++ )
+			{
+				final PendingWrite pendingWrite = batch.get( i );
+
+				if ( failures.get( i ) == null )
+				{
+					pendingWrite.result.complete( null );
+				}
+				else
+				{
+					pendingWrite.result.completeExceptionally( failures.get( i ) );
+				}
+			}
+		}
+		catch ( IOException | JSONException | RuntimeException exception )
+		{
+			batch.forEach( pendingWrite -> pendingWrite.result.completeExceptionally( exception ) );
+		}
+	}
+
+	private void await( final PendingWrite pendingWrite ) throws IOException, JSONException
+	{
+		try
+		{
+			// Not interruptible: the config might be written anyway.
+			pendingWrite.result.join();
+		}
+		catch ( RuntimeException exception )
+		{
+			final Throwable cause = ( exception.getCause() != null ) ? exception.getCause() : exception;
+
+			if ( cause instanceof IOException )
+			{
+				throw (IOException) cause;
+			}
+			if ( cause instanceof JSONException )
+			{
+				throw (JSONException) cause;
+			}
+			if ( cause instanceof RuntimeException )
+			{
+				throw (RuntimeException) cause;
+			}
+
+			throw new IOException( "Could not save the IdP config: " + pendingWrite.idpConfig.getId(), cause );
+		}
+	}
+
+	private static final class PendingWrite
+	{
+		private final IdpConfig idpConfig;
+		private final long expectedVersion;
+		private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+		private PendingWrite( final IdpConfig idpConfig, final long expectedVersion )
+		{
+			this.idpConfig = idpConfig;
+			this.expectedVersion = expectedVersion;
+		}
+	}
+}
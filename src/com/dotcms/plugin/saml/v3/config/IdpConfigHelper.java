@@ -1,9 +1,14 @@
 package com.dotcms.plugin.saml.v3.config;
 
 import com.dotcms.plugin.saml.v3.cache.SamlCache;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+import com.dotcms.plugin.saml.v3.meta.MetadataBeanCache;
+import com.dotcms.plugin.saml.v3.util.CredentialRegistry;
+import com.dotcms.plugin.saml.v3.util.InstanceUtil;
 
 import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UUIDGenerator;
 import com.dotmarketing.util.UtilMethods;
@@ -14,6 +19,8 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,22 +39,29 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 	}
 
 	private SamlCache samlCache = CacheLocator.getSamlCache();
+	private final IdpConfigRepository repository = InstanceUtil.newInstance(
+			Config.getStringProperty( DotSamlConstants.DOT_SAML_IDP_CONFIG_REPOSITORY_CLASS_NAME, null ), FileIdpConfigRepository.class );
 
 	public IdpConfigHelper()
 	{
 		
 	}
 
+	/**
+	 * Returns the repository the configs are stored in.
+	 */
+	public IdpConfigRepository getRepository()
+	{
+		return repository;
+	}
+
 	public void deleteIdpConfig( IdpConfig idpConfig ) throws IOException, JSONException
 	{
-		List<IdpConfig> idpConfigList = this.getIdpConfigs();
 		String defaultIdpConfigId = this.getDefaultIdpConfigId();
 
 		// We need to clean the defaultIdpConfigId if we are deleting the same IDP.
 		if ( idpConfig.getId().equals( defaultIdpConfigId ) )
 		{
-			defaultIdpConfigId = "";
-
 			// Update cache
 			try
 			{
@@ -59,12 +73,13 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 			}
 		}
 
-		if ( idpConfigList.contains( idpConfig ) )
+		IdpConfig storedIdpConfig = repository.findById( idpConfig.getId() );
+
+		if ( storedIdpConfig != null )
 		{
-			// Delete from list.
-			idpConfig = idpConfigList.get( idpConfigList.indexOf( idpConfig ) );
-			idpConfigList.remove( idpConfig );
-			IdpConfigWriterReader.writeDefaultIdpConfigId( idpConfigList, defaultIdpConfigId, IDP_FILE_PATH );
+			// Delete its file, the default is cleared if it was the default config.
+			idpConfig = storedIdpConfig;
+			repository.delete( idpConfig.getId() );
 
 			// Delete files from file system.
 			super.deleteFile( idpConfig.getPrivateKey() );
@@ -76,6 +91,9 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 			//Logger.warn( this, "IdpConfig with Id: " + idpConfig.getId() + "no longer exists." );
 		}
 
+		MetadataBeanCache.getInstance().invalidate( idpConfig.getId() );
+		CredentialRegistry.invalidateAll( idpConfig.getId() );
+
 		// Update cache
 		try
 		{
@@ -128,16 +146,8 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 
 	private IdpConfig findIdpConfigFileSystem( String id ) throws IOException, JSONException, DotDataException
 	{
-		IdpConfig idpConfig = null;
-		List<IdpConfig> idpConfigList = this.getIdpConfigsFileSystem();
-
-		for ( IdpConfig config : idpConfigList )
-		{
-			if ( config.getId().equals( id ) )
-			{
-				idpConfig = config;
-			}
-		}
+		// Reads only the file of this config.
+		IdpConfig idpConfig = repository.findById( id );
 
 		if ( idpConfig == null )
 		{
@@ -157,77 +167,56 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 		return idpConfig;
 	}
 
-	public IdpConfig findSiteIdpConfig( String site ) throws DotDataException, IOException, JSONException
-	{
-		if ( UtilMethods.isSet( site ) )
-		{
-			// Try cache
-			IdpConfig idpConfig = this.findSiteIdpConfigCache( site );
-
-			if ( idpConfig == null )
-			{
-				// Try file system
-				idpConfig = this.findSiteIdpConfigFileSystem( site );
-			}
-
-			return idpConfig;
-		}
-		else
-		{
-			throw new DotDataException( "site is required." );
-		}
-	}
-
-	private IdpConfig findSiteIdpConfigCache( String site )
+	/**
+	 * Returns the route of the site identifier or hostname. Only the config
+	 * the site is routed to is loaded, the first time it is hit.
+	 * 
+	 * @param site - The site identifier or canonical hostname.
+	 * @return The {@link SiteRoute}, with its config if SAML applies to the site.
+	 */
+	public SiteRoute route( String site ) throws IOException, JSONException, DotDataException
 	{
-		IdpConfig idpConfig = null;
-
-		try
-		{
-			idpConfig = samlCache.getSiteIdpConfig( site );
+		SiteRoute route = this.getRoutingTable().route( site );
 
-			return idpConfig;
-		}
-		catch ( Exception exception )
+		if ( route.isSamlEnabled() )
 		{
-			//Logger.info( this, "Error reading SamlCache" );
+			route = route.withIdpConfig( this.findIdpConfig( route.getIdpConfigId() ) );
 		}
 
-		return idpConfig;
+		return route;
 	}
 
-	private IdpConfig findSiteIdpConfigFileSystem( String site ) throws DotDataException, IOException, JSONException
+	/**
+	 * Returns the routing table of all the sites. If the cache does not hold
+	 * the config index, the default config id and the disabled sites, they
+	 * are read from the repository and loaded in one step; no config is
+	 * loaded.
+	 * 
+	 * @return The {@link SiteRoutingTable}.
+	 */
+	public SiteRoutingTable getRoutingTable() throws IOException, JSONException
 	{
-		IdpConfig idpConfig = null;
-		List<IdpConfig> idpConfigList = this.getIdpConfigsFileSystem();
+		// Try cache
+		SiteRoutingTable routingTable = samlCache.getRoutingTable();
 
-		for ( IdpConfig config : idpConfigList )
+		if ( routingTable == null )
 		{
-			Map<String, String> sites = config.getSites();
+			// Try repository
+			IdpConfigIndex index = repository.findIndex();
+			String defaultIdpConfigId = repository.getDefaultIdpConfigId();
+			Map<String, String> disabledSites = repository.getDisabledSites();
 
-			if ( sites.values().contains( site ) )
+			samlCache.load( index, defaultIdpConfigId, disabledSites );
+			routingTable = samlCache.getRoutingTable();
+
+			if ( routingTable == null )
 			{
-				idpConfig = config;
+				// The cache was flushed in the meantime.
+				routingTable = SiteRoutingTable.of( index, defaultIdpConfigId, disabledSites );
 			}
-
-		}
-
-		if ( idpConfig == null )
-		{
-			throw new DotDataException( "Idp for site: " + site + " not found in file." );
 		}
 
-		// Update cache
-		try
-		{
-			samlCache.addIdpConfig( idpConfig );
-		}
-		catch ( Exception exception )
-		{
-			//Logger.info( this, "Error writing to SamlCache" );
-		}
-
-		return idpConfig;
+		return routingTable;
 	}
 
 	public String getDefaultIdpConfigId() throws IOException, JSONException
@@ -262,7 +251,7 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 
 	private String getDefaultIdpConfigIdFileSystem() throws IOException, JSONException
 	{
-		String idpConfigId = IdpConfigWriterReader.readDefaultIdpConfigId( new File( IDP_FILE_PATH ) );
+		String idpConfigId = repository.getDefaultIdpConfigId();
 
 		if ( UtilMethods.isSet( idpConfigId ) )
 		{
@@ -286,8 +275,8 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 		// Try cache
 		Map<String, String> disabledSitesMap = this.getDisabledSiteIdsCache();
 
-		// Try file system
-		if ( !UtilMethods.isSet( disabledSitesMap ) )
+		// Try file system, an empty map is cached as well.
+		if ( disabledSitesMap == null )
 		{
 			disabledSitesMap = this.getDisabledSiteIdsFileSystem();
 		}
@@ -313,24 +302,29 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 
 	public Map<String, String> getDisabledSiteIdsFileSystem() throws IOException, JSONException
 	{
-		Map<String, String> disabledSitesMap = IdpConfigWriterReader.readDisabledSiteIds( new File( IDP_FILE_PATH ) );
+		Map<String, String> disabledSitesMap = repository.getDisabledSites();
 
-		if ( UtilMethods.isSet( disabledSitesMap ) )
+		// Update cache
+		try
 		{
-			// Update cache
-			try
-			{
-				samlCache.addDisabledSitesMap( disabledSitesMap );
-			}
-			catch ( Exception exception )
-			{
-				//Logger.info( this, "Error writing to SamlCache" );
-			}
+			samlCache.addDisabledSitesMap( disabledSitesMap );
+		}
+		catch ( Exception exception )
+		{
+			//Logger.info( this, "Error writing to SamlCache" );
 		}
 
 		return disabledSitesMap;
 	}
 
+	/**
+	 * Returns the ids of all the configs, without loading them.
+	 */
+	public List<String> getIdpConfigIds() throws IOException, JSONException
+	{
+		return repository.findAllIds();
+	}
+
 	public List<IdpConfig> getIdpConfigs() throws IOException, JSONException
 	{
 		// Try cache
@@ -363,7 +357,7 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 
 	private List<IdpConfig> getIdpConfigsFileSystem() throws IOException, JSONException
 	{
-		List<IdpConfig> idpConfigs = IdpConfigWriterReader.readIdpConfigs( new File( IDP_FILE_PATH ) );
+		List<IdpConfig> idpConfigs = repository.findAll();
 
 		// Update cache
 		try
@@ -418,7 +412,7 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 
 	private List<String> getIdpSitesFileSystem() throws IOException, JSONException
 	{
-		List<IdpConfig> idpConfigs = IdpConfigWriterReader.readIdpConfigs( new File( IDP_FILE_PATH ) );
+		List<IdpConfig> idpConfigs = repository.findAll();
 		List<String> sites = new ArrayList<String>();
 
 		idpConfigs.forEach( idpConfig -> {
@@ -445,27 +439,42 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 		return sites;
 	}
 
-	private IdpConfig renameIdpConfigFiles( IdpConfig idpConfig ) throws IOException
+	/**
+	 * Points the config to its key, cert and metadata files. New files are
+	 * only staged next to their targets, they are renamed over them once the
+	 * config is saved.
+	 */
+	private IdpConfig stageIdpConfigFiles( IdpConfig idpConfig, Map<File, File> stagedFiles ) throws IOException
 	{
 		if ( UtilMethods.isSet( idpConfig.getPrivateKey() ) )
 		{
-			idpConfig.setPrivateKey( super.writeCertFile( idpConfig.getPrivateKey(), idpConfig.getId() + ".key" ) );
+			idpConfig.setPrivateKey( this.stageIdpConfigFile( idpConfig.getPrivateKey(), new File( CERTS_PARENT_PATH + idpConfig.getId() + ".key" ), stagedFiles ) );
 		}
 		if ( UtilMethods.isSet( idpConfig.getPublicCert() ) )
 		{
-			idpConfig.setPublicCert( super.writeCertFile( idpConfig.getPublicCert(), idpConfig.getId() + ".crt" ) );
+			idpConfig.setPublicCert( this.stageIdpConfigFile( idpConfig.getPublicCert(), new File( CERTS_PARENT_PATH + idpConfig.getId() + ".crt" ), stagedFiles ) );
 		}
 		if ( UtilMethods.isSet( idpConfig.getIdPMetadataFile() ) )
 		{
-			idpConfig.setIdPMetadataFile( super.writeMetadataFile( idpConfig.getIdPMetadataFile(), idpConfig.getId() + ".xml" ) );
+			idpConfig.setIdPMetadataFile( this.stageIdpConfigFile( idpConfig.getIdPMetadataFile(), new File( METADATA_PARENT_PATH + idpConfig.getId() + ".xml" ), stagedFiles ) );
 		}
 
 		return idpConfig;
 	}
 
+	private File stageIdpConfigFile( File sourceFile, File targetFile, Map<File, File> stagedFiles ) throws IOException
+	{
+		if ( !sourceFile.getAbsoluteFile().equals( targetFile.getAbsoluteFile() ) )
+		{
+			stagedFiles.put( super.stageFile( sourceFile, targetFile ), targetFile );
+		}
+
+		return targetFile;
+	}
+
 	public void saveDisabledSiteIds( Map<String, String> disablebSitesMap ) throws IOException, JSONException
 	{
-		IdpConfigWriterReader.writeDisabledSIteIds( disablebSitesMap, IDP_FILE_PATH );
+		repository.setDisabledSites( disablebSitesMap );
 
 		// Update cache
 		try
@@ -481,24 +490,52 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 
 	public IdpConfig saveIdpConfig( IdpConfig idpConfig ) throws IOException, JSONException
 	{
-		List<IdpConfig> idpConfigList = this.getIdpConfigsFileSystem();
+		return this.saveIdpConfig( idpConfig, idpConfig.getVersion() );
+	}
 
-		if ( UtilMethods.isSet( idpConfig.getId() ) )
-		{
-			// Update.
-			idpConfigList.remove( idpConfig );
-		}
-		else
+	/**
+	 * Saves the config only if it was not saved by someone else since the
+	 * expected version was read.
+	 * 
+	 * @throws com.dotcms.plugin.saml.v3.exception.IdpConfigVersionConflictException
+	 *             if the stored version is not the expected one.
+	 */
+	public IdpConfig saveIdpConfig( IdpConfig idpConfig, long expectedVersion ) throws IOException, JSONException
+	{
+		if ( !UtilMethods.isSet( idpConfig.getId() ) )
 		{
 			// Create.
 			idpConfig.setId( UUIDGenerator.generateUuid() );
+			expectedVersion = 0;
 		}
 
-		// Renaming files
-		idpConfig = renameIdpConfigFiles( idpConfig );
+		// staged file to target, the stored files are only replaced once the save is accepted.
+		final Map<File, File> stagedFiles = new LinkedHashMap<>();
+
+		try
+		{
+			idpConfig = stageIdpConfigFiles( idpConfig, stagedFiles );
+
+			// Writes only the file of this config (and the manifest if it is new or its sites changed).
+			repository.save( idpConfig, expectedVersion );
+
+			for ( Iterator<Map.Entry<File, File>> iterator = stagedFiles.entrySet().iterator(); iterator.hasNext(); )
+			{
+				final Map.Entry<File, File> stagedFile = iterator.next();
+
+				super.commitFile( stagedFile.getKey(), stagedFile.getValue() );
+				iterator.remove();
+			}
+		}
+		finally
+		{
+			// Left only if the save failed or was rejected.
+			stagedFiles.keySet().forEach( super::deleteFile );
+		}
 
-		idpConfigList.add( idpConfig );
-		IdpConfigWriterReader.writeIdpConfigs( idpConfigList, IDP_FILE_PATH );
+		// The metadata file, the key/cert files, the protocol or the credential providers might have changed.
+		MetadataBeanCache.getInstance().invalidate( idpConfig.getId() );
+		CredentialRegistry.invalidateAll( idpConfig.getId() );
 
 		// Update cache
 		try
@@ -517,7 +554,7 @@ public class IdpConfigHelper extends IdpConfigFileHelper implements Serializable
 	{
 		if ( idpConfig != null )
 		{
-			IdpConfigWriterReader.writeDefaultIdpConfigId( idpConfig.getId(), IDP_FILE_PATH );
+			repository.setDefaultIdpConfigId( idpConfig.getId() );
 
 			// Update cache
 			try
@@ -0,0 +1,138 @@
+package com.dotcms.plugin.saml.v3.config;
+
+import com.dotmarketing.util.UtilMethods;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable index of the configs: their ids (in order), the ids of the
+ * enabled ones and the config of every site identifier and hostname. It is
+ * all the {@link SiteRoutingTable} needs, so the sites are routed without
+ * loading any config.
+ */
+public final class IdpConfigIndex
+{
+	public static final IdpConfigIndex EMPTY = new IdpConfigIndex( Collections.emptyList(), Collections.emptySet(), Collections.emptyMap() );
+
+	private final List<String> idpConfigIds;
+	private final Set<String> enabledIdpConfigIds;
+	private final Map<String, String> sites;
+
+	public IdpConfigIndex( final List<String> idpConfigIds, final Set<String> enabledIdpConfigIds, final Map<String, String> sites )
+	{
+		this.idpConfigIds = Collections.unmodifiableList( new ArrayList<>( idpConfigIds ) );
+		this.enabledIdpConfigIds = Collections.unmodifiableSet( new HashSet<>( enabledIdpConfigIds ) );
+		this.sites = Collections.unmodifiableMap( new HashMap<>( sites ) );
+	}
+
+	/**
+	 * Builds the index of the configs, a site of several configs belongs to
+	 * the last one.
+	 */
+	public static IdpConfigIndex of( final Collection<IdpConfig> idpConfigs )
+	{
+		final List<String> idpConfigIds = new ArrayList<>();
+		final Set<String> enabledIdpConfigIds = new HashSet<>();
+		final Map<String, String> sites = new HashMap<>();
+
+		for ( IdpConfig idpConfig : idpConfigs )
+		{
+			idpConfigIds.remove( idpConfig.getId() );
+			idpConfigIds.add( idpConfig.getId() );
+			putIdpConfig( enabledIdpConfigIds, sites, idpConfig );
+		}
+
+		return new IdpConfigIndex( idpConfigIds, enabledIdpConfigIds, sites );
+	}
+
+	public List<String> getIdpConfigIds()
+	{
+		return idpConfigIds;
+	}
+
+	public Set<String> getEnabledIdpConfigIds()
+	{
+		return enabledIdpConfigIds;
+	}
+
+	/**
+	 * Site identifiers and hostnames to config id.
+	 */
+	public Map<String, String> getSites()
+	{
+		return sites;
+	}
+
+	/**
+	 * Returns the index with the config added or updated, its previous sites
+	 * are replaced by the current ones.
+	 */
+	public IdpConfigIndex withIdpConfig( final IdpConfig idpConfig )
+	{
+		final List<String> newIdpConfigIds = new ArrayList<>( idpConfigIds );
+		final Set<String> newEnabledIdpConfigIds = new HashSet<>( enabledIdpConfigIds );
+		final Map<String, String> newSites = new HashMap<>( sites );
+
+		if ( !newIdpConfigIds.contains( idpConfig.getId() ) )
+		{
+			newIdpConfigIds.add( idpConfig.getId() );
+		}
+
+		newEnabledIdpConfigIds.remove( idpConfig.getId() );
+		newSites.values().removeIf( idpConfig.getId()::equals );
+		putIdpConfig( newEnabledIdpConfigIds, newSites, idpConfig );
+
+		return new IdpConfigIndex( newIdpConfigIds, newEnabledIdpConfigIds, newSites );
+	}
+
+	/**
+	 * Returns the index without the config and its sites.
+	 */
+	public IdpConfigIndex withoutIdpConfig( final String idpConfigId )
+	{
+		final List<String> newIdpConfigIds = new ArrayList<>( idpConfigIds );
+		final Set<String> newEnabledIdpConfigIds = new HashSet<>( enabledIdpConfigIds );
+		final Map<String, String> newSites = new HashMap<>( sites );
+
+		newIdpConfigIds.remove( idpConfigId );
+		newEnabledIdpConfigIds.remove( idpConfigId );
+		newSites.values().removeIf( idpConfigId::equals );
+
+		return new IdpConfigIndex( newIdpConfigIds, newEnabledIdpConfigIds, newSites );
+	}
+
+	/**
+	 * Returns the index with the site routed to the config.
+	 */
+	public IdpConfigIndex withSite( final String site, final String idpConfigId )
+	{
+		final Map<String, String> newSites = new HashMap<>( sites );
+
+		newSites.put( site.trim(), idpConfigId );
+
+		return new IdpConfigIndex( idpConfigIds, enabledIdpConfigIds, newSites );
+	}
+
+	private static void putIdpConfig( final Set<String> enabledIdpConfigIds, final Map<String, String> sites, final IdpConfig idpConfig )
+	{
+		if ( idpConfig.isEnabled() )
+		{
+			enabledIdpConfigIds.add( idpConfig.getId() );
+		}
+
+		if ( UtilMethods.isSet( idpConfig.getSites() ) )
+		{
+			idpConfig.getSites().forEach( ( identifier, hostname ) -> {
+				sites.put( identifier.trim(), idpConfig.getId() );
+				sites.put( hostname.trim(), idpConfig.getId() );
+			});
+		}
+	}
+}
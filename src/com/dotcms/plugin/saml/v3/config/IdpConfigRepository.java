@@ -0,0 +1,88 @@
+package com.dotcms.plugin.saml.v3.config;
+
+import com.dotmarketing.util.json.JSONException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists the {@link IdpConfig} objects, the default config id and the
+ * disabled sites. The implementation is set with
+ * {@link com.dotcms.plugin.saml.v3.key.DotSamlConstants#DOT_SAML_IDP_CONFIG_REPOSITORY_CLASS_NAME},
+ * by default the configs are kept in the saml asset directory
+ * ({@link FileIdpConfigRepository}).
+ */
+public interface IdpConfigRepository
+{
+	/**
+	 * Returns the config with the id, or null if there is none.
+	 */
+	IdpConfig findById( String idpConfigId ) throws IOException, JSONException;
+
+	/**
+	 * Returns the {@link IdpConfigIndex} of all the configs, without loading
+	 * them.
+	 */
+	IdpConfigIndex findIndex() throws IOException, JSONException;
+
+	/**
+	 * Returns the ids of all the configs, without loading them.
+	 */
+	List<String> findAllIds() throws IOException, JSONException;
+
+	/**
+	 * Returns all the configs.
+	 */
+	List<IdpConfig> findAll() throws IOException, JSONException;
+
+	/**
+	 * Returns the id of the default config, or an empty string if there is
+	 * none.
+	 */
+	String getDefaultIdpConfigId() throws IOException, JSONException;
+
+	/**
+	 * Returns the disabled sites, identifier to hostname.
+	 */
+	Map<String, String> getDisabledSites() throws IOException, JSONException;
+
+	/**
+	 * Adds or updates the config from its own version, see
+	 * {@link #save(IdpConfig, long)}.
+	 */
+	default void save( IdpConfig idpConfig ) throws IOException, JSONException
+	{
+		this.save( idpConfig, idpConfig.getVersion() );
+	}
+
+	/**
+	 * Adds or updates the config if the stored version is the expected one (0
+	 * for a new config), the version of the config is then set to the new
+	 * stored version.
+	 * 
+	 * @throws com.dotcms.plugin.saml.v3.exception.IdpConfigVersionConflictException
+	 *             if the stored version is another one.
+	 */
+	void save( IdpConfig idpConfig, long expectedVersion ) throws IOException, JSONException;
+
+	/**
+	 * Deletes the config, if it was the default config the default is
+	 * cleared.
+	 */
+	void delete( String idpConfigId ) throws IOException, JSONException;
+
+	void setDefaultIdpConfigId( String idpConfigId ) throws IOException, JSONException;
+
+	void setDisabledSites( Map<String, String> disabledSites ) throws IOException, JSONException;
+
+	/**
+	 * Returns a value that changes on every write, so the other nodes of a
+	 * cluster can cheaply check whether the configs changed, or null if the
+	 * changes are only picked up by watching the config files.
+	 */
+	default String getRevision() throws IOException, JSONException
+	{
+		return null;
+	}
+}
@@ -0,0 +1,683 @@
+package com.dotcms.plugin.saml.v3.config;
+
+import com.dotcms.plugin.saml.v3.exception.IdpConfigVersionConflictException;
+import com.dotcms.plugin.saml.v3.util.FileFingerprint;
+
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+import com.dotmarketing.util.json.JSONArray;
+import com.dotmarketing.util.json.JSONException;
+import com.dotmarketing.util.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Stores the SAML configs with one file per IdP plus a small manifest.
+ * <p>
+ * The store lives next to the legacy config file: the manifest
+ * (<code>manifest.json</code>) holds the {@link IdpConfigIndex}, the default
+ * config id and the disabled sites; every config is kept in
+ * <code>idps/&lt;id&gt;.json</code>. A legacy config file found without a
+ * manifest is split once into this layout and left untouched.
+ * <p>
+ * Every file is parsed once and parsed again only when its size or
+ * modification time changes, and configs are only parsed when they are looked
+ * up. Changes are written to a temp file that is atomically renamed over the
+ * target, and only the files whose content changed are written. Configs
+ * saved together are committed with a single manifest write, each one only if
+ * it was saved from its stored version.
+ * <p>
+ * Every write holds an exclusive lock on <code>manifest.lock</code>, so the
+ * nodes of a cluster sharing the directory do not write at the same time,
+ * and reads the manifest and the configs it checks again under that lock.
+ * On a network mount the lock only holds across hosts if the file system
+ * supports it (e.g. NFSv4, or NFSv3 with lockd).
+ */
+public class IdpConfigStore
+{
+	private static final Map<String, IdpConfigStore> STORES = new ConcurrentHashMap<>();
+
+	private static final String MANIFEST_FILE_NAME = "manifest.json";
+	private static final String LOCK_FILE_NAME = "manifest.lock";
+	private static final String IDP_CONFIGS_DIRECTORY_NAME = "idps";
+	private static final String IDP_CONFIG_FILE_EXTENSION = ".json";
+	private static final Pattern IDP_CONFIG_ID_PATTERN = Pattern.compile( "[A-Za-z0-9][A-Za-z0-9._-]*" );
+
+	private final File idpConfigFile;
+	private final File manifestFile;
+	private final File lockFile;
+	private final File idpConfigsDirectory;
+
+	private Manifest manifest;
+	private FileFingerprint manifestFingerprint;
+	private final Map<String, Shard> shards = new HashMap<>();
+
+	private IdpConfigStore( final File idpConfigFile )
+	{
+		final File parent = idpConfigFile.getAbsoluteFile().getParentFile();
+
+		this.idpConfigFile = idpConfigFile;
+		this.manifestFile = new File( parent, MANIFEST_FILE_NAME );
+		this.lockFile = new File( parent, LOCK_FILE_NAME );
+		this.idpConfigsDirectory = new File( parent, IDP_CONFIGS_DIRECTORY_NAME );
+	}
+
+	/**
+	 * Returns the store for the legacy config file, one per path.
+	 */
+	public static IdpConfigStore getInstance( final File idpConfigFile )
+	{
+		return STORES.computeIfAbsent( idpConfigFile.getAbsolutePath(), path -> new IdpConfigStore( new File( path ) ) );
+	}
+
+	public File getManifestFile()
+	{
+		return manifestFile;
+	}
+
+	public File getIdpConfigsDirectory()
+	{
+		return idpConfigsDirectory;
+	}
+
+	/**
+	 * Returns the id of the config stored in the file, or null if the file is
+	 * not a config file of this store.
+	 */
+	public String getIdpConfigId( final File file )
+	{
+		final String name = file.getName();
+
+		if ( !this.idpConfigsDirectory.getAbsoluteFile().equals( file.getAbsoluteFile().getParentFile() ) || !name.endsWith( IDP_CONFIG_FILE_EXTENSION ) )
+		{
+			return null;
+		}
+
+		return name.substring( 0, name.length() - IDP_CONFIG_FILE_EXTENSION.length() );
+	}
+
+	/**
+	 * Returns the manifest, parsing it only if it changed since the last read
+	 * or write.
+	 */
+	public synchronized Manifest readManifest() throws IOException, JSONException
+	{
+		if ( !this.manifestFile.exists() && this.idpConfigFile.exists() )
+		{
+			this.migrate();
+		}
+
+		final FileFingerprint current = FileFingerprint.stat( this.manifestFile );
+
+		if ( this.manifest == null || !current.sameStat( this.manifestFingerprint ) )
+		{
+			this.manifest = this.manifestFile.exists() ? Manifest.parse( this.read( this.manifestFile ) ) : Manifest.EMPTY;
+
+			if ( this.manifest.hasEnabledIds )
+			{
+				this.manifestFingerprint = current;
+			}
+			else
+			{
+				// Written again with the flags, which also sets its fingerprint.
+				this.indexEnabledIds();
+			}
+		}
+
+		return this.manifest;
+	}
+
+	/**
+	 * Returns the config, parsing only its own file, or null if there is no
+	 * config with that id.
+	 */
+	public synchronized IdpConfig readIdpConfig( final String idpConfigId ) throws IOException, JSONException
+	{
+		if ( !this.readManifest().getIdpConfigIds().contains( idpConfigId ) )
+		{
+			return null;
+		}
+
+		return this.readShard( idpConfigId );
+	}
+
+	/**
+	 * Returns the index of the configs, no config file is parsed.
+	 */
+	public synchronized IdpConfigIndex readIndex() throws IOException, JSONException
+	{
+		return this.readManifest().getIndex();
+	}
+
+	private IdpConfig readShard( final String idpConfigId ) throws IOException, JSONException
+	{
+		final File file = this.getIdpConfigFile( idpConfigId );
+		final FileFingerprint current = FileFingerprint.stat( file );
+		final Shard shard = this.shards.get( idpConfigId );
+
+		if ( shard != null && current.sameStat( shard.fingerprint ) )
+		{
+			return shard.idpConfig;
+		}
+
+		if ( !file.exists() )
+		{
+			Logger.warn( this, "The SAML config file of the IdP: " + idpConfigId + " is missing: " + file );
+			this.shards.remove( idpConfigId );
+			return null;
+		}
+
+		final String content = this.read( file );
+		final IdpConfig idpConfig = IdpJsonTransformer.jsonToIdp( new JSONObject( content ) );
+
+		this.shards.put( idpConfigId, new Shard( idpConfig, content, current ) );
+
+		return idpConfig;
+	}
+
+	/**
+	 * Returns the whole content, parsing every config that is not loaded yet.
+	 */
+	public synchronized Document read() throws IOException, JSONException
+	{
+		final Manifest current = this.readManifest();
+		final List<IdpConfig> idpConfigs = new ArrayList<>();
+
+		for ( String idpConfigId : current.getIdpConfigIds() )
+		{
+			final IdpConfig idpConfig = this.readIdpConfig( idpConfigId );
+
+			if ( idpConfig != null )
+			{
+				idpConfigs.add( idpConfig );
+			}
+		}
+
+		return new Document( idpConfigs, current.getDefaultIdpConfigId(), current.getDisabledSites() );
+	}
+
+	/**
+	 * Adds or updates several configs in one commit. Each config is written
+	 * only if its expected version is the stored version (0 for a new config),
+	 * and then gets the stored version plus one; the manifest is written once
+	 * for all the configs that were written, even if others failed. Returns,
+	 * in the same order, null for each config written, or why it was not: an
+	 * {@link IdpConfigVersionConflictException} or the exception its file
+	 * could not be written with.
+	 */
+	public synchronized List<Exception> writeIdpConfigs( final List<IdpConfig> idpConfigs, final List<Long> expectedVersions ) throws IOException, JSONException
+	{
+		return this.locked( () -> {
+			final List<Exception> failures = new ArrayList<>( idpConfigs.size() );
+			// The versions written by this commit, the manifest does not have the new configs yet.
+			final Map<String, Long> versions = new HashMap<>();
+			Manifest newManifest = this.readManifest();
+
+			for ( int i = 0; i < idpConfigs.size(); i++ )
+			{
+				final IdpConfig idpConfig = idpConfigs.get( i );
+				final Long version = versions.get( idpConfig.getId() );
+
+				if ( version == null )
+				{
+					// Written by another node since it was read.
+					this.shards.remove( idpConfig.getId() );
+				}
+
+				final long previousVersion = idpConfig.getVersion();
+
+				try
+				{
+					final long storedVersion = ( version != null ) ? version : this.readVersion( idpConfig.getId() );
+
+					if ( storedVersion != expectedVersions.get( i ) )
+					{
+						failures.add( new IdpConfigVersionConflictException( idpConfig.getId(), expectedVersions.get( i ) ) );
+						continue;
+					}
+
+					idpConfig.setVersion( storedVersion + 1 );
+					this.writeShard( idpConfig );
+				}
+				catch ( IOException | JSONException | RuntimeException exception )
+				{
+					// Its file is left as it was, the other configs are still committed.
+					idpConfig.setVersion( previousVersion );
+					failures.add( exception );
+					continue;
+				}
+
+				newManifest = newManifest.withIdpConfig( idpConfig );
+				versions.put( idpConfig.getId(), idpConfig.getVersion() );
+				failures.add( null );
+			}
+
+			this.writeManifest( newManifest );
+
+			return failures;
+		});
+	}
+
+	/**
+	 * Deletes one config file and removes it from the manifest. If it was the
+	 * default config, the default is cleared.
+	 */
+	public synchronized void deleteIdpConfig( final String idpConfigId ) throws IOException, JSONException
+	{
+		this.locked( () -> {
+			this.writeManifest( this.readManifest().withoutIdpConfig( idpConfigId ) );
+			this.deleteShard( idpConfigId );
+			return null;
+		});
+	}
+
+	/**
+	 * Sets the default config id, only the manifest is written.
+	 */
+	public synchronized File writeDefaultIdpConfigId( final String defaultIdpConfigId ) throws IOException, JSONException
+	{
+		return this.locked( () -> {
+			this.writeManifest( this.readManifest().withDefaultIdpConfigId( defaultIdpConfigId ) );
+			return this.manifestFile;
+		});
+	}
+
+	/**
+	 * Sets the disabled sites, only the manifest is written.
+	 */
+	public synchronized File writeDisabledSites( final Map<String, String> disabledSites ) throws IOException, JSONException
+	{
+		return this.locked( () -> {
+			this.writeManifest( this.readManifest().withDisabledSites( disabledSites ) );
+			return this.manifestFile;
+		});
+	}
+
+	/**
+	 * Drops everything kept in memory, the files will be parsed on the next
+	 * read.
+	 */
+	public synchronized void invalidate()
+	{
+		this.manifest = null;
+		this.manifestFingerprint = null;
+		this.shards.clear();
+	}
+
+	// Another node may have written since the last read, so the manifest is parsed again under the lock.
+	private <T> T locked( final LockedWrite<T> write ) throws IOException, JSONException
+	{
+		this.lockFile.getAbsoluteFile().getParentFile().mkdirs();
+
+		try ( FileChannel channel = FileChannel.open( this.lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+				FileLock lock = channel.lock() )
+		{
+			this.manifestFingerprint = null;
+
+			return write.run();
+		}
+	}
+
+	private long readVersion( final String idpConfigId ) throws IOException, JSONException
+	{
+		final IdpConfig stored = this.readIdpConfig( idpConfigId );
+
+		return ( stored != null ) ? stored.getVersion() : 0;
+	}
+
+	// Manifests written before the enabled configs were indexed: their flags are read once from the config files.
+	private void indexEnabledIds() throws IOException, JSONException
+	{
+		final List<IdpConfig> idpConfigs = new ArrayList<>();
+
+		for ( String idpConfigId : this.manifest.getIdpConfigIds() )
+		{
+			final IdpConfig idpConfig = this.readShard( idpConfigId );
+
+			if ( idpConfig != null )
+			{
+				idpConfigs.add( idpConfig );
+			}
+		}
+
+		this.writeManifest( Manifest.of( idpConfigs, this.manifest.getDefaultIdpConfigId(), this.manifest.getDisabledSites() ) );
+	}
+
+	private void migrate() throws IOException, JSONException
+	{
+		Logger.info( this, "Migrating the SAML config file: " + this.idpConfigFile + " to one file per IdP in: " + this.idpConfigsDirectory );
+
+		final Document legacy = parseLegacy( this.read( this.idpConfigFile ) );
+
+		for ( IdpConfig idpConfig : legacy.getIdpConfigs() )
+		{
+			this.writeShard( idpConfig );
+		}
+
+		// The legacy file is left in place, so an older plugin still finds the configs it had.
+		this.writeManifest( Manifest.of( legacy.getIdpConfigs(), legacy.getDefaultIdpConfigId(), legacy.getDisabledSites() ) );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static Document parseLegacy( final String content ) throws IOException, JSONException
+	{
+		final JSONObject jsonObject = new JSONObject( content );
+
+		final List<IdpConfig> idpConfigs = new ArrayList<>();
+		final JSONArray jsonArray = jsonObject.getJSONArray( IdpConfigWriterReader.IDP_CONFIGS );
+
+		for ( int i = 0; i < jsonArray.size(); i++ )
+		{
+			// jsonObjectId = UUID:{idpConfigs}
+			final JSONObject jsonObjectId = jsonArray.getJSONObject( i );
+
+			// I don't like this hack but we need to get the id.
+			Iterator<String> keys = jsonObjectId.keys();
+			String idpId = keys.next();
+
+			// Now we can get the real JSONObject.
+			idpConfigs.add( IdpJsonTransformer.jsonToIdp( jsonObjectId.getJSONObject( idpId ) ) );
+		}
+
+		String defaultIdpConfigId = "";
+		Map<String, String> disabledSites = new HashMap<>();
+
+		if ( jsonObject.has( IdpConfigWriterReader.DEFAULT_SAML_CONFIG ) )
+		{
+			defaultIdpConfigId = jsonObject.getString( IdpConfigWriterReader.DEFAULT_SAML_CONFIG );
+		}
+
+		if ( jsonObject.has( IdpConfigWriterReader.DISABLE_SAML_SITES ) )
+		{
+			disabledSites = SiteJsonTransformer.getMapFromJsonObject( jsonObject.getJSONObject( IdpConfigWriterReader.DISABLE_SAML_SITES ) );
+		}
+
+		return new Document( idpConfigs, defaultIdpConfigId, disabledSites );
+	}
+
+	private File getIdpConfigFile( final String idpConfigId ) throws IOException
+	{
+		if ( idpConfigId == null || !IDP_CONFIG_ID_PATTERN.matcher( idpConfigId ).matches() )
+		{
+			throw new IOException( "Invalid IdP config id: " + idpConfigId );
+		}
+
+		return new File( this.idpConfigsDirectory, idpConfigId + IDP_CONFIG_FILE_EXTENSION );
+	}
+
+	private void writeShard( final IdpConfig idpConfig ) throws IOException, JSONException
+	{
+		final File file = this.getIdpConfigFile( idpConfig.getId() );
+		final String content = IdpJsonTransformer.idpToJson( idpConfig ).toString();
+		final Shard shard = this.shards.get( idpConfig.getId() );
+
+		if ( shard == null || !content.equals( shard.content ) || !FileFingerprint.stat( file ).sameStat( shard.fingerprint ) )
+		{
+			writeAtomically( file, content );
+		}
+
+		this.shards.put( idpConfig.getId(), new Shard( idpConfig, content, FileFingerprint.stat( file ) ) );
+	}
+
+	private void deleteShard( final String idpConfigId ) throws IOException
+	{
+		this.shards.remove( idpConfigId );
+		Files.deleteIfExists( this.getIdpConfigFile( idpConfigId ).toPath() );
+	}
+
+	private void writeManifest( final Manifest newManifest ) throws IOException, JSONException
+	{
+		final String content = newManifest.toJson();
+
+		if ( this.manifest != null && content.equals( this.manifest.content ) && FileFingerprint.stat( this.manifestFile ).sameStat( this.manifestFingerprint ) )
+		{
+			Logger.debug( this, "Skipping write of unchanged SAML manifest: " + this.manifestFile );
+			return;
+		}
+
+		writeAtomically( this.manifestFile, content );
+
+		this.manifest = newManifest.withContent( content );
+		this.manifestFingerprint = FileFingerprint.stat( this.manifestFile );
+	}
+
+	private String read( final File file ) throws IOException
+	{
+		return new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 );
+	}
+
+	private static void writeAtomically( final File file, final String content ) throws IOException
+	{
+		final Path target = file.toPath();
+		final File parent = file.getAbsoluteFile().getParentFile();
+
+		parent.mkdirs();
+
+		final Path temp = Files.createTempFile( parent.toPath(), file.getName(), ".tmp" );
+
+		try
+		{
+			Files.write( temp, content.getBytes( StandardCharsets.UTF_8 ) );
+
+			try
+			{
+				Files.move( temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+			}
+			catch ( AtomicMoveNotSupportedException exception )
+			{
+				Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING );
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists( temp );
+		}
+	}
+
+	@FunctionalInterface
+	private interface LockedWrite<T>
+	{
+		T run() throws IOException, JSONException;
+	}
+
+	private static final class Shard
+	{
+		private final IdpConfig idpConfig;
+		private final String content;
+		private final FileFingerprint fingerprint;
+
+		private Shard( final IdpConfig idpConfig, final String content, final FileFingerprint fingerprint )
+		{
+			this.idpConfig = idpConfig;
+			this.content = content;
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	/**
+	 * Immutable content of the manifest: the {@link IdpConfigIndex}, the
+	 * default config id and the disabled sites.
+	 */
+	public static final class Manifest
+	{
+		private static final Manifest EMPTY = new Manifest( IdpConfigIndex.EMPTY, "", Collections.emptyMap(), null, true );
+
+		private final IdpConfigIndex index;
+		private final String defaultIdpConfigId;
+		private final Map<String, String> disabledSites;
+		private final String content;
+		private final boolean hasEnabledIds;
+
+		private Manifest( final IdpConfigIndex index, final String defaultIdpConfigId, final Map<String, String> disabledSites, final String content,
+				final boolean hasEnabledIds )
+		{
+			this.index = index;
+			this.defaultIdpConfigId = ( defaultIdpConfigId != null ) ? defaultIdpConfigId : "";
+			this.disabledSites = ( disabledSites != null ) ? Collections.unmodifiableMap( new HashMap<>( disabledSites ) ) : Collections.emptyMap();
+			this.content = content;
+			this.hasEnabledIds = hasEnabledIds;
+		}
+
+		private static Manifest of( final List<IdpConfig> idpConfigs, final String defaultIdpConfigId, final Map<String, String> disabledSites )
+		{
+			return new Manifest( IdpConfigIndex.of( idpConfigs ), defaultIdpConfigId, disabledSites, null, true );
+		}
+
+		private static Manifest parse( final String content ) throws JSONException
+		{
+			final JSONObject jsonObject = new JSONObject( content );
+
+			final List<String> idpConfigIds = parseIds( jsonObject, IdpConfigWriterReader.IDP_CONFIG_IDS );
+			final Set<String> enabledIdpConfigIds = new HashSet<>( parseIds( jsonObject, IdpConfigWriterReader.IDP_CONFIG_ENABLED_IDS ) );
+			final Map<String, String> sites = jsonObject.has( IdpConfigWriterReader.IDP_CONFIG_SITES )
+					? SiteJsonTransformer.getMapFromJsonObject( jsonObject.getJSONObject( IdpConfigWriterReader.IDP_CONFIG_SITES ) ) : new HashMap<>();
+			final String defaultIdpConfigId = jsonObject.has( IdpConfigWriterReader.DEFAULT_SAML_CONFIG )
+					? jsonObject.getString( IdpConfigWriterReader.DEFAULT_SAML_CONFIG ) : "";
+			final Map<String, String> disabledSites = jsonObject.has( IdpConfigWriterReader.DISABLE_SAML_SITES )
+					? SiteJsonTransformer.getMapFromJsonObject( jsonObject.getJSONObject( IdpConfigWriterReader.DISABLE_SAML_SITES ) ) : new HashMap<>();
+
+			return new Manifest( new IdpConfigIndex( idpConfigIds, enabledIdpConfigIds, sites ), defaultIdpConfigId, disabledSites, content,
+					jsonObject.has( IdpConfigWriterReader.IDP_CONFIG_ENABLED_IDS ) );
+		}
+
+		private static List<String> parseIds( final JSONObject jsonObject, final String key ) throws JSONException
+		{
+			final List<String> ids = new ArrayList<>();
+
+			if ( jsonObject.has( key ) )
+			{
+				final JSONArray jsonArray = jsonObject.getJSONArray( key );
+
+				for ( int i = 0; i < jsonArray.size(); i++ )
+				{
+					ids.add( jsonArray.getString( i ) );
+				}
+			}
+
+			return ids;
+		}
+
+		public IdpConfigIndex getIndex()
+		{
+			return index;
+		}
+
+		public List<String> getIdpConfigIds()
+		{
+			return index.getIdpConfigIds();
+		}
+
+		public String getDefaultIdpConfigId()
+		{
+			return defaultIdpConfigId;
+		}
+
+		public Map<String, String> getDisabledSites()
+		{
+			return disabledSites;
+		}
+
+		private Manifest withIdpConfig( final IdpConfig idpConfig )
+		{
+			return new Manifest( index.withIdpConfig( idpConfig ), defaultIdpConfigId, disabledSites, content, true );
+		}
+
+		private Manifest withoutIdpConfig( final String idpConfigId )
+		{
+			return new Manifest( index.withoutIdpConfig( idpConfigId ), idpConfigId.equals( defaultIdpConfigId ) ? "" : defaultIdpConfigId, disabledSites, content, true );
+		}
+
+		private Manifest withDefaultIdpConfigId( final String newDefaultIdpConfigId )
+		{
+			return new Manifest( index, newDefaultIdpConfigId, disabledSites, content, true );
+		}
+
+		private Manifest withDisabledSites( final Map<String, String> newDisabledSites )
+		{
+			return new Manifest( index, defaultIdpConfigId, newDisabledSites, content, true );
+		}
+
+		private Manifest withContent( final String newContent )
+		{
+			return new Manifest( index, defaultIdpConfigId, disabledSites, newContent, true );
+		}
+
+		private String toJson() throws JSONException
+		{
+			final JSONArray idpConfigIds = new JSONArray();
+			final JSONArray enabledIdpConfigIds = new JSONArray();
+
+			for ( String idpConfigId : index.getIdpConfigIds() )
+			{
+				idpConfigIds.add( idpConfigId );
+
+				if ( index.getEnabledIdpConfigIds().contains( idpConfigId ) )
+				{
+					enabledIdpConfigIds.add( idpConfigId );
+				}
+			}
+
+			final JSONObject jsonObject = new JSONObject();
+			jsonObject.put( IdpConfigWriterReader.DEFAULT_SAML_CONFIG, defaultIdpConfigId );
+			jsonObject.put( IdpConfigWriterReader.IDP_CONFIG_IDS, idpConfigIds );
+			jsonObject.put( IdpConfigWriterReader.IDP_CONFIG_ENABLED_IDS, enabledIdpConfigIds );
+			jsonObject.put( IdpConfigWriterReader.IDP_CONFIG_SITES, SiteJsonTransformer.getJsonObjecFromtMap( index.getSites() ) );
+			jsonObject.put( IdpConfigWriterReader.DISABLE_SAML_SITES, SiteJsonTransformer.getJsonObjecFromtMap( disabledSites ) );
+
+			return jsonObject.toString();
+		}
+	}
+
+	/**
+	 * Immutable view of all the configs, the default config id and the
+	 * disabled sites.
+	 */
+	public static final class Document
+	{
+		private final List<IdpConfig> idpConfigs;
+		private final String defaultIdpConfigId;
+		private final Map<String, String> disabledSites;
+
+		public Document( final List<IdpConfig> idpConfigs, final String defaultIdpConfigId, final Map<String, String> disabledSites )
+		{
+			this.idpConfigs = Collections.unmodifiableList( new ArrayList<>( idpConfigs ) );
+			this.defaultIdpConfigId = defaultIdpConfigId;
+			this.disabledSites = ( disabledSites != null ) ? Collections.unmodifiableMap( new LinkedHashMap<>( disabledSites ) ) : Collections.emptyMap();
+		}
+
+		public List<IdpConfig> getIdpConfigs()
+		{
+			return idpConfigs;
+		}
+
+		public String getDefaultIdpConfigId()
+		{
+			return defaultIdpConfigId;
+		}
+
+		public Map<String, String> getDisabledSites()
+		{
+			return disabledSites;
+		}
+	}
+}
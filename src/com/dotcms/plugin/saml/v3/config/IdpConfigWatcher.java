@@ -0,0 +1,543 @@
+package com.dotcms.plugin.saml.v3.config;
+
+import com.dotcms.plugin.saml.v3.cache.SamlCache;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+import com.dotcms.plugin.saml.v3.meta.MetadataBeanCache;
+import com.dotcms.plugin.saml.v3.util.CredentialRegistry;
+import com.dotcms.plugin.saml.v3.util.FileFingerprint;
+import com.dotcms.plugin.saml.v3.util.SamlLogger;
+
+import com.dotmarketing.business.CacheLocator;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Watches the saml asset directory (config file, metadata and certificates)
+ * and applies the changes made outside this node, for instance on a cluster
+ * sharing the assets directory, without flushing the caches.
+ * <p>
+ * Events are debounced: the changed files are collected and processed once
+ * no more events arrive for {@link DotSamlConstants#DOT_SAML_CONFIG_WATCHER_DEBOUNCE_MILLIS}.
+ * A change to the file of one config reloads only that config in the
+ * {@link SamlCache}, if it is loaded, and invalidates its metadata and
+ * credentials; a change to the manifest reloads the {@link IdpConfigIndex},
+ * the default config and the disabled sites and removes the deleted configs;
+ * a change to a metadata, key or certificate file only invalidates the
+ * configs that use it.
+ * <p>
+ * File system events are not raised for files written by other hosts on
+ * network mounts (NFS, SMB), so the same directories are also polled every
+ * {@link DotSamlConstants#DOT_SAML_CONFIG_WATCHER_POLL_SECONDS}: the files
+ * whose {@link FileFingerprint} changed are processed as if an event had been
+ * received for them.
+ * <p>
+ * When the configs are not kept in files (e.g. {@link DatabaseIdpConfigRepository})
+ * only the metadata and certificates are watched, and the
+ * {@link IdpConfigRepository#getRevision()} is checked at the same interval:
+ * when it changed, the index and the loaded configs are reloaded.
+ */
+public class IdpConfigWatcher
+{
+	private static final String THREAD_NAME = "dotsaml-config-watcher";
+
+	private static class SingletonHolder
+	{
+		private static final IdpConfigWatcher INSTANCE = new IdpConfigWatcher();
+	}
+
+	public static IdpConfigWatcher getInstance()
+	{
+		return IdpConfigWatcher.SingletonHolder.INSTANCE;
+	}
+
+	private final AtomicBoolean started = new AtomicBoolean( false );
+	private final Set<Path> pendingPaths = ConcurrentHashMap.newKeySet();
+	private final IdpConfigStore store = IdpConfigStore.getInstance( new File( IdpConfigFileHelper.IDP_FILE_PATH ) );
+	private final Path manifestPath = this.store.getManifestFile().toPath().toAbsolutePath().normalize();
+	private final Path overflowPath = this.manifestPath.resolveSibling( StandardWatchEventKinds.OVERFLOW.name() );
+
+	private volatile Set<String> knownIdpConfigIds = new HashSet<>();
+	private volatile String revision;
+	private volatile List<Path> directories = Collections.emptyList();
+	private volatile Map<Path, FileFingerprint> fingerprints = Collections.emptyMap();
+
+	private WatchService watchService;
+	private Thread watchThread;
+	private ScheduledExecutorService executor;
+	private ScheduledFuture<?> scheduledReload;
+	private long debounceMillis;
+
+	private IdpConfigWatcher()
+	{
+
+	}
+
+	/**
+	 * Starts watching the saml asset directory, unless it is disabled by
+	 * configuration or it has already been started.
+	 */
+	public void start()
+	{
+		if ( !Config.getBooleanProperty( DotSamlConstants.DOT_SAML_CONFIG_WATCHER_ENABLED, true ) || !this.started.compareAndSet( false, true ) )
+		{
+			return;
+		}
+
+		this.debounceMillis = Config.getIntProperty( DotSamlConstants.DOT_SAML_CONFIG_WATCHER_DEBOUNCE_MILLIS, DotSamlConstants.DOT_SAML_CONFIG_WATCHER_DEBOUNCE_MILLIS_DEFAULT_VALUE );
+
+		final int pollSeconds = Config.getIntProperty( DotSamlConstants.DOT_SAML_CONFIG_WATCHER_POLL_SECONDS, DotSamlConstants.DOT_SAML_CONFIG_WATCHER_POLL_SECONDS_DEFAULT_VALUE );
+		final List<Path> watchedDirectories = new ArrayList<>();
+		final IdpConfigRepository repository = IdpConfigHelper.getInstance().getRepository();
+		final boolean files = repository instanceof FileIdpConfigRepository;
+
+		// The config files are only watched when the configs are stored in them.
+		if ( files )
+		{
+			try
+			{
+				this.knownIdpConfigIds = new HashSet<>( this.store.readManifest().getIdpConfigIds() );
+			}
+			catch ( IOException | JSONException exception )
+			{
+				Logger.warn( this, "Could not read the SAML manifest: " + exception.getMessage() );
+			}
+
+			watchedDirectories.add( this.manifestPath.getParent() );
+			watchedDirectories.add( this.store.getIdpConfigsDirectory().toPath().toAbsolutePath().normalize() );
+		}
+		else
+		{
+			try
+			{
+				// Read first, a change made meanwhile is then reloaded on the next check.
+				this.revision = repository.getRevision();
+				this.knownIdpConfigIds = new HashSet<>( repository.findAllIds() );
+			}
+			catch ( IOException | JSONException exception )
+			{
+				Logger.warn( this, "Could not read the SAML configs: " + exception.getMessage() );
+			}
+		}
+
+		watchedDirectories.add( Paths.get( IdpConfigFileHelper.METADATA_PARENT_PATH ).toAbsolutePath().normalize() );
+		watchedDirectories.add( Paths.get( IdpConfigFileHelper.CERTS_PARENT_PATH ).toAbsolutePath().normalize() );
+
+		watchedDirectories.forEach( directory -> directory.toFile().mkdirs() );
+		this.directories = Collections.unmodifiableList( watchedDirectories );
+
+		final boolean watching = this.startWatching();
+
+		if ( !watching && pollSeconds <= 0 )
+		{
+			Logger.error( this, "Could not start the SAML config watcher and polling is disabled. Changes made on other nodes will not be picked up." );
+			this.stop();
+			return;
+		}
+
+		this.executor = Executors.newSingleThreadScheduledExecutor( runnable -> {
+			final Thread thread = new Thread( runnable, THREAD_NAME + "-reload" );
+			thread.setDaemon( true );
+			return thread;
+		});
+
+		if ( pollSeconds > 0 )
+		{
+			this.fingerprints = this.scan();
+			this.executor.scheduleWithFixedDelay( this::poll, pollSeconds, pollSeconds, TimeUnit.SECONDS );
+
+			if ( !files )
+			{
+				this.executor.scheduleWithFixedDelay( this::checkRevision, pollSeconds, pollSeconds, TimeUnit.SECONDS );
+			}
+		}
+		else if ( !files )
+		{
+			Logger.warn( this, "SAML config polling is disabled, config changes made on other nodes will not be picked up." );
+		}
+
+		if ( watching )
+		{
+			this.watchThread = new Thread( this::watch, THREAD_NAME );
+			this.watchThread.setDaemon( true );
+			this.watchThread.start();
+		}
+
+		Logger.info( this, "SAML config watcher started on: " + IdpConfigFileHelper.getAssetsPath() + ", file events: " + watching
+				+ ", polling every: " + pollSeconds + " seconds" );
+	}
+
+	/**
+	 * Stops watching, pending changes are discarded.
+	 */
+	public synchronized void stop()
+	{
+		this.started.set( false );
+
+		try
+		{
+			if ( this.watchService != null )
+			{
+				this.watchService.close();
+			}
+		}
+		catch ( IOException exception )
+		{
+			Logger.warn( this, "Could not close the SAML config watcher: " + exception.getMessage() );
+		}
+
+		if ( this.watchThread != null )
+		{
+			this.watchThread.interrupt();
+		}
+
+		if ( this.executor != null )
+		{
+			this.executor.shutdownNow();
+		}
+
+		this.pendingPaths.clear();
+	}
+
+	private boolean startWatching()
+	{
+		try
+		{
+			this.watchService = FileSystems.getDefault().newWatchService();
+
+			for ( Path directory : this.directories )
+			{
+				directory.register( this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE );
+			}
+
+			return true;
+		}
+		catch ( IOException | UnsupportedOperationException exception )
+		{
+			Logger.warn( this, "Could not watch the SAML config files, they will only be polled: " + exception.getMessage() );
+
+			try
+			{
+				if ( this.watchService != null )
+				{
+					this.watchService.close();
+				}
+			}
+			catch ( IOException closeException )
+			{
+				Logger.debug( this, "Could not close the SAML config watcher: " + closeException.getMessage() );
+			}
+
+			this.watchService = null;
+
+			return false;
+		}
+	}
+
+	// Picks up the changes no event was received for, e.g. files written by other hosts on a network mount.
+	private void poll()
+	{
+		try
+		{
+			final Map<Path, FileFingerprint> previous = this.fingerprints;
+			final Map<Path, FileFingerprint> current = this.scan();
+			final Set<Path> changedPaths = new HashSet<>();
+
+			current.forEach( ( path, fingerprint ) -> {
+
+				if ( !fingerprint.sameStat( previous.get( path ) ) )
+				{
+					changedPaths.add( path );
+				}
+			});
+
+			previous.keySet().stream().filter( path -> !current.containsKey( path ) ).forEach( changedPaths::add );
+
+			this.fingerprints = current;
+
+			if ( !changedPaths.isEmpty() )
+			{
+				SamlLogger.debug( this, () -> "Polling found changed SAML files: " + changedPaths );
+				this.pendingPaths.addAll( changedPaths );
+				this.scheduleReload();
+			}
+		}
+		catch ( Exception exception )
+		{
+			Logger.warn( this, "Could not poll the SAML config files: " + exception.getMessage() );
+		}
+	}
+
+	// Picks up the changes made to the configs on other nodes when they are not kept in files.
+	private void checkRevision()
+	{
+		try
+		{
+			final String current = IdpConfigHelper.getInstance().getRepository().getRevision();
+
+			if ( current == null || current.equals( this.revision ) )
+			{
+				return;
+			}
+
+			SamlLogger.debug( this, () -> "The SAML config revision changed to: " + current );
+			this.reloadIdpConfigs();
+			this.revision = current;
+		}
+		catch ( Exception exception )
+		{
+			Logger.warn( this, "Could not check the SAML config revision: " + exception.getMessage() );
+		}
+	}
+
+	private Map<Path, FileFingerprint> scan()
+	{
+		final Map<Path, FileFingerprint> current = new HashMap<>();
+
+		for ( Path directory : this.directories )
+		{
+			final File[] files = directory.toFile().listFiles( File::isFile );
+
+			if ( files != null )
+			{
+				for ( File file : files )
+				{
+					current.put( file.toPath().toAbsolutePath().normalize(), FileFingerprint.stat( file ) );
+				}
+			}
+		}
+
+		return current;
+	}
+
+	private void watch()
+	{
+		while ( this.started.get() )
+		{
+			final WatchKey watchKey;
+
+			try
+			{
+				watchKey = this.watchService.take();
+			}
+			catch ( InterruptedException | ClosedWatchServiceException exception )
+			{
+				return;
+			}
+
+			final Path directory = (Path) watchKey.watchable();
+
+			for ( WatchEvent<?> event : watchKey.pollEvents() )
+			{
+				if ( event.kind() == StandardWatchEventKinds.OVERFLOW )
+				{
+					this.pendingPaths.add( this.overflowPath );
+				}
+				else
+				{
+					this.pendingPaths.add( directory.resolve( (Path) event.context() ).toAbsolutePath().normalize() );
+				}
+			}
+
+			watchKey.reset();
+			this.scheduleReload();
+		}
+	}
+
+	private synchronized void scheduleReload()
+	{
+		if ( this.scheduledReload != null )
+		{
+			this.scheduledReload.cancel( false );
+		}
+
+		if ( !this.executor.isShutdown() )
+		{
+			this.scheduledReload = this.executor.schedule( this::reload, this.debounceMillis, TimeUnit.MILLISECONDS );
+		}
+	}
+
+	private void reload()
+	{
+		final Set<Path> paths = new HashSet<>( this.pendingPaths );
+
+		this.pendingPaths.removeAll( paths );
+		paths.removeIf( path -> path.getFileName().toString().endsWith( ".tmp" ) );
+
+		if ( paths.isEmpty() )
+		{
+			return;
+		}
+
+		try
+		{
+			if ( paths.remove( this.overflowPath ) )
+			{
+				// Some events were lost, reload everything comparing with what is cached.
+				this.reloadIdpConfigs();
+				paths.clear();
+			}
+
+			if ( paths.remove( this.manifestPath ) )
+			{
+				this.reloadIndex();
+			}
+
+			for ( final Iterator<Path> iterator = paths.iterator(); iterator.hasNext(); )
+			{
+				final String idpConfigId = this.store.getIdpConfigId( iterator.next().toFile() );
+
+				if ( idpConfigId != null )
+				{
+					this.reloadIdpConfig( idpConfigId );
+					iterator.remove();
+				}
+			}
+
+			if ( !paths.isEmpty() )
+			{
+				this.invalidateFiles( paths );
+			}
+		}
+		catch ( Exception exception )
+		{
+			Logger.error( this, "Could not apply the changes to the SAML config files: " + paths, exception );
+		}
+	}
+
+	private void reloadIndex() throws Exception
+	{
+		final IdpConfigRepository repository = IdpConfigHelper.getInstance().getRepository();
+		final IdpConfigIndex index = repository.findIndex();
+
+		// Configs deleted on another node.
+		for ( String idpConfigId : this.knownIdpConfigIds )
+		{
+			if ( !index.getIdpConfigIds().contains( idpConfigId ) )
+			{
+				this.reloadIdpConfig( idpConfigId );
+			}
+		}
+
+		this.knownIdpConfigIds = new HashSet<>( index.getIdpConfigIds() );
+
+		// Only the index is replaced, the configs are loaded when their sites are hit.
+		CacheLocator.getSamlCache().load( index, repository.getDefaultIdpConfigId(), repository.getDisabledSites() );
+
+		SamlLogger.debug( this, () -> "Reloaded the SAML config index." );
+	}
+
+	private void reloadIdpConfig( final String idpConfigId ) throws Exception
+	{
+		final SamlCache samlCache = CacheLocator.getSamlCache();
+		final IdpConfig cached = samlCache.getIdpConfig( idpConfigId );
+
+		// The store parses the file again only if it changed since the last read or write.
+		final IdpConfig current = IdpConfigHelper.getInstance().getRepository().findById( idpConfigId );
+
+		if ( current == null )
+		{
+			if ( cached != null )
+			{
+				samlCache.removeIdpConfig( cached );
+			}
+		}
+		else if ( cached != null )
+		{
+			if ( IdpJsonTransformer.idpToJson( cached ).toString().equals( IdpJsonTransformer.idpToJson( current ).toString() ) )
+			{
+				// Written by this node, the cache is already up to date.
+				return;
+			}
+
+			samlCache.addIdpConfig( current );
+		}
+
+		// A config that is not loaded is read on its first lookup, only its metadata and credentials might be cached.
+
+		MetadataBeanCache.getInstance().invalidate( idpConfigId );
+		CredentialRegistry.invalidateAll( idpConfigId );
+
+		SamlLogger.debug( this, () -> "Reloaded the SAML config of the IdP: " + idpConfigId );
+	}
+
+	private void reloadIdpConfigs() throws Exception
+	{
+		final SamlCache samlCache = CacheLocator.getSamlCache();
+		final Set<String> idpConfigIds = new HashSet<>( this.knownIdpConfigIds );
+
+		this.store.invalidate();
+		this.reloadIndex();
+
+		idpConfigIds.addAll( this.knownIdpConfigIds );
+
+		// Deleted configs were reloaded with the index, only the loaded ones can be stale.
+		for ( String idpConfigId : idpConfigIds )
+		{
+			if ( samlCache.getIdpConfig( idpConfigId ) != null )
+			{
+				this.reloadIdpConfig( idpConfigId );
+			}
+		}
+
+		SamlLogger.debug( this, () -> "Reloaded all the loaded SAML configs." );
+	}
+
+	private void invalidateFiles( final Set<Path> paths ) throws Exception
+	{
+		final SamlCache samlCache = CacheLocator.getSamlCache();
+
+		// Only the configs that have been loaded might have cached metadata or credentials.
+		for ( String idpConfigId : IdpConfigHelper.getInstance().getRepository().findAllIds() )
+		{
+			final IdpConfig idpConfig = samlCache.getIdpConfig( idpConfigId );
+
+			if ( idpConfig == null )
+			{
+				continue;
+			}
+
+			if ( this.uses( paths, idpConfig.getIdPMetadataFile() ) )
+			{
+				MetadataBeanCache.getInstance().invalidate( idpConfig.getId() );
+				SamlLogger.debug( this, () -> "Metadata changed for IdP: " + idpConfig.getId() );
+			}
+
+			if ( this.uses( paths, idpConfig.getPrivateKey() ) || this.uses( paths, idpConfig.getPublicCert() ) )
+			{
+				CredentialRegistry.invalidateAll( idpConfig.getId() );
+				SamlLogger.debug( this, () -> "Credentials changed for IdP: " + idpConfig.getId() );
+			}
+		}
+	}
+
+	private boolean uses( final Set<Path> paths, final File file )
+	{
+		return file != null && paths.contains( file.toPath().toAbsolutePath().normalize() );
+	}
+}
@@ -92,6 +92,7 @@ public class IdpJsonTransformer
 		jsonObject.put( "signatureValidationType", idpConfig.getSignatureValidationType().trim() );
 		jsonObject.put( "optionalProperties", getJsonObjectFromProperties( idpConfig.getOptionalProperties() ) );
 		jsonObject.put( "sites", SiteJsonTransformer.getJsonObjecFromtMap( idpConfig.getSites() ) );
+		jsonObject.put( "version", idpConfig.getVersion() );
 
 		return jsonObject;
 	}
@@ -111,6 +112,7 @@ public class IdpJsonTransformer
 		idpConfig.setSignatureValidationType( jsonObject.getString( "signatureValidationType" ).trim() );
 		idpConfig.setOptionalProperties( getPropertiesFromJsonObject( jsonObject.getJSONObject( "optionalProperties" ) ) );
 		idpConfig.setSites( SiteJsonTransformer.getMapFromJsonObject( jsonObject.getJSONObject( "sites" ) ) );
+		idpConfig.setVersion( jsonObject.has( "version" ) ? jsonObject.getLong( "version" ) : 0 );
 
 		return idpConfig;
 	}
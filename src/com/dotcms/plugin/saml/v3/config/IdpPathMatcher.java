@@ -0,0 +1,340 @@
+package com.dotcms.plugin.saml.v3.config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.dotmarketing.util.Logger;
+
+/**
+ * Classifies a request uri against the access filter, include and logout
+ * paths of an {@link IdpConfig}. The lists are compiled once (see
+ * {@link EndpointHelper#getPathMatcher(IdpConfig)}) so each check is a
+ * single pass over the uri:
+ * <ul>
+ * <li>access filters: any literal contained in the uri (Aho-Corasick
+ * automaton).</li>
+ * <li>logout paths: any literal the uri starts with (prefix trie).</li>
+ * <li>include paths: any regex found in the uri (one alternation
+ * pattern).</li>
+ * </ul>
+ */
+public final class IdpPathMatcher
+{
+	private static final Pattern BACK_REFERENCE = Pattern.compile( "\\\\[1-9]" );
+
+	private final LiteralTrie accessFilters;
+	private final LiteralTrie logoutPaths;
+	private final Pattern[] includePatterns;
+
+	private IdpPathMatcher( final LiteralTrie accessFilters, final LiteralTrie logoutPaths, final Pattern[] includePatterns )
+	{
+		this.accessFilters = accessFilters;
+		this.logoutPaths = logoutPaths;
+		this.includePatterns = includePatterns;
+	}
+
+	/**
+	 * Compiles the path lists, any of them might be null.
+	 * 
+	 * @param accessFilterPaths String[] literals to exclude from the SAML processing
+	 * @param includePaths String[] regex to include in the SAML processing
+	 * @param logoutPaths String[] literal logout path prefixes
+	 * @return IdpPathMatcher
+	 */
+	public static IdpPathMatcher compile( final String[] accessFilterPaths, final String[] includePaths, final String[] logoutPaths )
+	{
+		return new IdpPathMatcher( new LiteralTrie( accessFilterPaths ), new LiteralTrie( logoutPaths ), compilePatterns( includePaths, "include path" ) );
+	}
+
+	/**
+	 * True if the uri contains any of the access filter paths, so it does not
+	 * need SAML processing.
+	 * 
+	 * @param uri String
+	 * @return boolean
+	 */
+	public boolean isAccessFiltered( final String uri )
+	{
+		return this.accessFilters.isContainedIn( uri );
+	}
+
+	/**
+	 * True if any of the include path patterns is found in the uri.
+	 * 
+	 * @param uri String
+	 * @return boolean
+	 */
+	public boolean isIncluded( final String uri )
+	{
+		for ( final Pattern pattern : this.includePatterns )
+		{
+			if ( pattern.matcher( uri ).find() )
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * True if the uri starts with any of the logout paths.
+	 * 
+	 * @param uri String
+	 * @return boolean
+	 */
+	public boolean isLogoutPath( final String uri )
+	{
+		return this.logoutPaths.isPrefixOf( uri );
+	}
+
+	/*
+	 * Joins all the valid patterns in one alternation, so the uri is scanned
+	 * once. Patterns with back references can not be joined (the group numbers
+	 * would shift), in that case or if the joined pattern does not compile
+	 * they are kept apart.
+	 */
+	static Pattern[] compilePatterns( final String[] regexes, final String kind )
+	{
+		final List<Pattern> patterns = new ArrayList<>();
+
+		if ( null == regexes )
+		{
+			return new Pattern[0];
+		}
+
+		for ( final String regex : regexes )
+		{
+			try
+			{
+				patterns.add( Pattern.compile( regex ) );
+			}
+			catch ( PatternSyntaxException exception )
+			{
+				Logger.warn( IdpPathMatcher.class, "Invalid " + kind + " pattern: " + regex + ", " + exception.getMessage() );
+			}
+		}
+
+		if ( patterns.size() > 1 && patterns.stream().noneMatch( pattern -> BACK_REFERENCE.matcher( pattern.pattern() ).find() ) )
+		{
+			final StringBuilder alternation = new StringBuilder();
+
+			for ( final Pattern pattern : patterns )
+			{
+				alternation.append( alternation.length() > 0 ? "|" : "" ).append( "(?:" ).append( pattern.pattern() ).append( ')' );
+			}
+
+			try
+			{
+				return new Pattern[] { Pattern.compile( alternation.toString() ) };
+			}
+			catch ( PatternSyntaxException exception )
+			{
+				Logger.debug( IdpPathMatcher.class, "The " + kind + " patterns could not be joined, matching them one by one: " + exception.getMessage() );
+			}
+		}
+
+		return patterns.toArray( new Pattern[patterns.size()] );
+	}
+
+	/**
+	 * Trie of literals with Aho-Corasick failure links. The nodes are kept in
+	 * flat arrays, children sorted by char, so lookups do not allocate.
+	 */
+	private static final class LiteralTrie
+	{
+		private static final char[] NO_KEYS = new char[0];
+		private static final int[] NO_CHILDREN = new int[0];
+
+		private final char[][] keys;
+		private final int[][] children;
+		private final int[] failure;
+		// a literal ends on the node.
+		private final boolean[] word;
+		// a literal ends on the node or on one of its failure suffixes.
+		private final boolean[] output;
+
+		private LiteralTrie( final String[] literals )
+		{
+			final List<Map<Character, Integer>> nodes = new ArrayList<>();
+			final List<Boolean> words = new ArrayList<>();
+
+			nodes.add( new TreeMap<>() );
+			words.add( false );
+
+			if ( null != literals )
+			{
+				for ( final String literal : literals )
+				{
+					int node = 0;
+
+					for ( int i = 0; i < literal.length(); i++ )
+					{
+						final Integer next = nodes.get( node ).get( literal.charAt( i ) );
+
+						if ( null == next )
+						{
+							nodes.add( new TreeMap<>() );
+							words.add( false );
+							nodes.get( node ).put( literal.charAt( i ), nodes.size() - 1 );
+							node = nodes.size() - 1;
+						}
+						else
+						{
+							node = next;
+						}
+					}
+
+					words.set( node, true );
+				}
+			}
+
+			final int size = nodes.size();
+
+			this.keys = new char[size][];
+			this.children = new int[size][];
+			this.failure = new int[size];
+			this.word = new boolean[size];
+			this.output = new boolean[size];
+
+			for ( int node = 0; node < size; node++ )
+			{
+				final Map<Character, Integer> nodeChildren = nodes.get( node );
+				this.keys[node] = nodeChildren.isEmpty() ? NO_KEYS : new char[nodeChildren.size()];
+				this.children[node] = nodeChildren.isEmpty() ? NO_CHILDREN : new int[nodeChildren.size()];
+
+				int i = 0;
+				for ( final Map.Entry<Character, Integer> child : nodeChildren.entrySet() )
+				{
+					this.keys[node][i] = child.getKey();
+					this.children[node][i] = child.getValue();
+					i++;
+				}
+
+				this.word[node] = words.get( node );
+				this.output[node] = this.word[node];
+			}
+
+			this.buildFailureLinks();
+		}
+
+		private void buildFailureLinks()
+		{
+			final Deque<Integer> queue = new ArrayDeque<>();
+
+			for ( final int child : this.children[0] )
+			{
+				this.failure[child] = 0;
+				queue.add( child );
+			}
+
+			while ( !queue.isEmpty() )
+			{
+				final int node = queue.poll();
+
+				for ( int i = 0; i < this.keys[node].length; i++ )
+				{
+					final char key = this.keys[node][i];
+					final int child = this.children[node][i];
+					int fallback = this.failure[node];
+
+					while ( fallback != 0 && this.child( fallback, key ) < 0 )
+					{
+						fallback = this.failure[fallback];
+					}
+
+					final int target = this.child( fallback, key );
+					this.failure[child] = ( target < 0 || target == child ) ? 0 : target;
+					this.output[child] |= this.output[this.failure[child]];
+					queue.add( child );
+				}
+			}
+		}
+
+		private int child( final int node, final char key )
+		{
+			final char[] nodeKeys = this.keys[node];
+			int low = 0;
+			int high = nodeKeys.length - 1;
+
+			while ( low <= high )
+			{
+				final int middle = ( low + high ) >>> 1;
+
+				if ( nodeKeys[middle] < key )
+				{
+					low = middle + 1;
+				}
+				else if ( nodeKeys[middle] > key )
+				{
+					high = middle - 1;
+				}
+				else
+				{
+					return this.children[node][middle];
+				}
+			}
+
+			return -1;
+		}
+
+		/*
+		 * True if any of the literals is contained in the text.
+		 */
+		private boolean isContainedIn( final String text )
+		{
+			int state = 0;
+
+			if ( this.output[0] )
+			{
+				return true;
+			}
+
+			for ( int i = 0; i < text.length(); i++ )
+			{
+				final char c = text.charAt( i );
+
+				while ( state != 0 && this.child( state, c ) < 0 )
+				{
+					state = this.failure[state];
+				}
+
+				final int next = this.child( state, c );
+				state = ( next < 0 ) ? 0 : next;
+
+				if ( this.output[state] )
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		/*
+		 * True if the text starts with any of the literals.
+		 */
+		private boolean isPrefixOf( final String text )
+		{
+			int state = 0;
+
+			for ( int i = 0; !this.word[state] && i < text.length(); i++ )
+			{
+				state = this.child( state, text.charAt( i ) );
+
+				if ( state < 0 )
+				{
+					return false;
+				}
+			}
+
+			return this.word[state];
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.util.Collection;
 import org.opensaml.security.credential.Credential;
 import com.dotcms.plugin.saml.v3.meta.DefaultMetaDescriptorServiceImpl;
 import com.dotcms.plugin.saml.v3.meta.MetaDescriptorService;
+import com.dotcms.plugin.saml.v3.meta.MetadataBeanCache;
 import com.dotcms.plugin.saml.v3.meta.MetadataBean;
 import com.dotcms.plugin.saml.v3.parameters.DotsamlPropertiesService;
 import com.dotcms.plugin.saml.v3.parameters.DotsamlPropertyName;
@@ -22,13 +23,25 @@ import com.dotmarketing.util.Logger;
  */
 public class MetaDataHelper {
 	/**
-	 * Gets the metadata, null if it can not be created.
+	 * Gets the metadata, null if it can not be created. The parsed metadata is
+	 * kept in the {@link MetadataBeanCache} until the metadata file changes.
 	 * 
 	 * @param idpConfig
 	 *            IdpConfig
 	 * @return MetadataBean
 	 */
 	public static MetadataBean getMetaData(IdpConfig idpConfig) {
+		return MetadataBeanCache.getInstance().get(idpConfig, MetaDataHelper::parseMetaData);
+	}
+
+	/**
+	 * Parses the metadata file of the idpConfig, null if it can not be parsed.
+	 * 
+	 * @param idpConfig
+	 *            IdpConfig
+	 * @return MetadataBean
+	 */
+	private static MetadataBean parseMetaData(IdpConfig idpConfig) {
 		MetadataBean metadataBean = null;
 		MetaDescriptorService descriptorParser = InstanceUtil.newInstance(
 				DotsamlPropertiesService.getOptionString(idpConfig,
@@ -0,0 +1,127 @@
+package com.dotcms.plugin.saml.v3.config;
+
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Include role patterns and remove role prefix of an IdP compiled once, so
+ * the roles of a login are filtered and stripped without compiling a regex
+ * per role and pattern.
+ * <p>
+ * The role is url decoded before matching the patterns, only when it has
+ * something to decode.
+ */
+public final class RoleMatcher
+{
+	private final String[] includeRegexes;
+	private final Pattern[] includePatterns;
+	private final String removePrefixRegex;
+	private final Pattern removePrefix;
+
+	private RoleMatcher( final String[] includeRegexes, final String removePrefixRegex )
+	{
+		this.includeRegexes = ( null != includeRegexes ) ? includeRegexes.clone() : new String[0];
+		this.includePatterns = IdpPathMatcher.compilePatterns( this.includeRegexes, "include role" );
+		this.removePrefixRegex = removePrefixRegex;
+		this.removePrefix = UtilMethods.isSet( removePrefixRegex ) ? compilePrefix( removePrefixRegex ) : null;
+	}
+
+	/**
+	 * Compiles the include role patterns and the remove role prefix.
+	 *
+	 * @param includeRegexes String[] regex of the roles to include, all roles are included if there is none
+	 * @param removePrefixRegex String regex of the prefix to remove from the roles, may be null
+	 * @return RoleMatcher
+	 */
+	public static RoleMatcher compile( final String[] includeRegexes, final String removePrefixRegex )
+	{
+		return new RoleMatcher( includeRegexes, removePrefixRegex );
+	}
+
+	/**
+	 * Returns true if there are no include patterns or the url decoded role
+	 * contains a match of any of them.
+	 *
+	 * @param role String
+	 * @return boolean
+	 */
+	public boolean isIncluded( final String role )
+	{
+		if ( this.includeRegexes.length == 0 )
+		{
+			return true;
+		}
+
+		if ( null == role )
+		{
+			return false;
+		}
+
+		final String decodedRole = decode( role );
+
+		for ( final Pattern pattern : this.includePatterns )
+		{
+			if ( pattern.matcher( decodedRole ).find() )
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the role without the first match of the remove role prefix.
+	 *
+	 * @param role String
+	 * @return String
+	 */
+	public String removePrefix( final String role )
+	{
+		return ( null != this.removePrefix && null != role ) ? this.removePrefix.matcher( role ).replaceFirst( "" ) : role;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "include role patterns: " + Arrays.asList( this.includeRegexes ) + ", remove role prefix: " + this.removePrefixRegex;
+	}
+
+	private static Pattern compilePrefix( final String regex )
+	{
+		try
+		{
+			return Pattern.compile( regex );
+		}
+		catch ( PatternSyntaxException exception )
+		{
+			Logger.warn( RoleMatcher.class, "Invalid remove role prefix: " + regex + ", removing it as a literal: " + exception.getMessage() );
+
+			return Pattern.compile( regex, Pattern.LITERAL );
+		}
+	}
+
+	// '+' is decoded too, as a space.
+	private static String decode( final String role )
+	{
+		if ( role.indexOf( '%' ) < 0 && role.indexOf( '+' ) < 0 )
+		{
+			return role;
+		}
+
+		try
+		{
+			return URLDecoder.decode( role, "UTF-8" );
+		}
+		catch ( UnsupportedEncodingException | IllegalArgumentException exception )
+		{
+			return role;
+		}
+	}
+}
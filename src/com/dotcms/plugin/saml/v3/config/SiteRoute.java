@@ -0,0 +1,101 @@
+package com.dotcms.plugin.saml.v3.config;
+
+/**
+ * What the SAML filters have to do for a site: authenticate with its own
+ * {@link IdpConfig}, authenticate with the default one, or nothing because
+ * SAML is disabled for the site or there is no config for it.
+ * <p>
+ * The {@link SiteRoutingTable} only knows the id of the config, the config is
+ * loaded when the route is resolved, see {@link IdpConfigHelper#route(String)}.
+ */
+public final class SiteRoute
+{
+	public enum State
+	{
+		/**
+		 * The site has an enabled config.
+		 */
+		ENABLED,
+
+		/**
+		 * SAML is disabled for the site, or its config is disabled.
+		 */
+		DISABLED,
+
+		/**
+		 * The site has no config, the default config is used.
+		 */
+		DEFAULT,
+
+		/**
+		 * The site has no config and there is no enabled default config.
+		 */
+		NONE
+	}
+
+	public static final SiteRoute DISABLED = new SiteRoute( State.DISABLED, null, null );
+	public static final SiteRoute NONE = new SiteRoute( State.NONE, null, null );
+
+	private final State state;
+	private final String idpConfigId;
+	private final IdpConfig idpConfig;
+
+	private SiteRoute( final State state, final String idpConfigId, final IdpConfig idpConfig )
+	{
+		this.state = state;
+		this.idpConfigId = idpConfigId;
+		this.idpConfig = idpConfig;
+	}
+
+	static SiteRoute enabled( final String idpConfigId )
+	{
+		return new SiteRoute( State.ENABLED, idpConfigId, null );
+	}
+
+	static SiteRoute byDefault( final String idpConfigId )
+	{
+		return new SiteRoute( State.DEFAULT, idpConfigId, null );
+	}
+
+	/**
+	 * Returns the same route with its config loaded.
+	 */
+	SiteRoute withIdpConfig( final IdpConfig loadedIdpConfig )
+	{
+		return new SiteRoute( state, idpConfigId, loadedIdpConfig );
+	}
+
+	public State getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Returns the id of the config to authenticate with, null if SAML does not
+	 * apply to the site.
+	 */
+	public String getIdpConfigId()
+	{
+		return idpConfigId;
+	}
+
+	/**
+	 * Returns the config to authenticate with, null if SAML does not apply to
+	 * the site or the route has not been resolved.
+	 */
+	public IdpConfig getIdpConfig()
+	{
+		return idpConfig;
+	}
+
+	public boolean isSamlEnabled()
+	{
+		return idpConfigId != null;
+	}
+
+	@Override
+	public String toString()
+	{
+		return ( idpConfigId != null ) ? state + "(" + ( ( idpConfig != null ) ? idpConfig.getIdpName() : idpConfigId ) + ")" : state.toString();
+	}
+}
@@ -0,0 +1,65 @@
+package com.dotcms.plugin.saml.v3.config;
+
+import com.dotmarketing.util.UtilMethods;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable table of the {@link SiteRoute} of every site identifier and
+ * hostname that has a config or is disabled; any other site gets the default
+ * config, if there is an enabled one. It is built from the
+ * {@link IdpConfigIndex}, the default config id and the disabled sites all at
+ * once, without loading any config, so a request is routed with a single map
+ * lookup.
+ */
+public final class SiteRoutingTable
+{
+	private final Map<String, SiteRoute> routes;
+	private final SiteRoute fallback;
+
+	private SiteRoutingTable( final Map<String, SiteRoute> routes, final SiteRoute fallback )
+	{
+		this.routes = routes;
+		this.fallback = fallback;
+	}
+
+	/**
+	 * Builds the table. A disabled site is disabled even if it has a config; a
+	 * site of a disabled config is disabled, it does not fall back to the
+	 * default config.
+	 */
+	public static SiteRoutingTable of( final IdpConfigIndex index, final String defaultIdpConfigId, final Map<String, String> disabledSites )
+	{
+		final Map<String, SiteRoute> routes = new HashMap<>();
+		// One route per config, shared by all its sites.
+		final Map<String, SiteRoute> enabledRoutes = new HashMap<>();
+
+		index.getSites().forEach( ( site, idpConfigId ) -> routes.put( site, index.getEnabledIdpConfigIds().contains( idpConfigId )
+				? enabledRoutes.computeIfAbsent( idpConfigId, SiteRoute::enabled ) : SiteRoute.DISABLED ) );
+
+		if ( disabledSites != null )
+		{
+			disabledSites.forEach( ( identifier, hostname ) -> {
+				routes.put( identifier.trim(), SiteRoute.DISABLED );
+				routes.put( hostname.trim(), SiteRoute.DISABLED );
+			});
+		}
+
+		final SiteRoute fallback = ( UtilMethods.isSet( defaultIdpConfigId ) && index.getEnabledIdpConfigIds().contains( defaultIdpConfigId ) )
+				? SiteRoute.byDefault( defaultIdpConfigId ) : SiteRoute.NONE;
+
+		return new SiteRoutingTable( Collections.unmodifiableMap( routes ), fallback );
+	}
+
+	/**
+	 * Returns the route of the site identifier or canonical hostname.
+	 */
+	public SiteRoute route( final String site )
+	{
+		final SiteRoute route = ( site != null ) ? this.routes.get( site ) : null;
+
+		return ( route != null ) ? route : this.fallback;
+	}
+}
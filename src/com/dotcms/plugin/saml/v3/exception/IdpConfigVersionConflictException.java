@@ -0,0 +1,31 @@
+package com.dotcms.plugin.saml.v3.exception;
+
+/**
+ * Thrown when an IdP config is saved from a version that is not the stored
+ * one anymore, that is someone else saved (or deleted) it in the meantime.
+ */
+public class IdpConfigVersionConflictException extends DotSamlException
+{
+	private static final long serialVersionUID = 4137265890418356427L;
+
+	private final String idpConfigId;
+	private final long expectedVersion;
+
+	public IdpConfigVersionConflictException( String idpConfigId, long expectedVersion )
+	{
+		super( "The IdP config: " + idpConfigId + " was modified by someone else, version: " + expectedVersion + " is not the current version." );
+
+		this.idpConfigId = idpConfigId;
+		this.expectedVersion = expectedVersion;
+	}
+
+	public String getIdpConfigId()
+	{
+		return idpConfigId;
+	}
+
+	public long getExpectedVersion()
+	{
+		return expectedVersion;
+	}
+}
@@ -14,6 +14,8 @@ import javax.servlet.http.HttpSession;
 import com.dotcms.cms.login.LoginServiceAPI;
 import com.dotcms.plugin.saml.v3.config.EndpointHelper;
 import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.config.IdpPathMatcher;
+import com.dotcms.plugin.saml.v3.config.SiteRoute;
 import com.dotcms.plugin.saml.v3.exception.DotSamlException;
 import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
 import com.dotcms.plugin.saml.v3.parameters.DotsamlPropertiesService;
@@ -22,6 +24,8 @@ import com.dotcms.plugin.saml.v3.service.OpenSamlAuthenticationServiceImpl;
 import com.dotcms.plugin.saml.v3.service.SamlAuthenticationService;
 import com.dotcms.plugin.saml.v3.util.InstanceUtil;
 import com.dotcms.plugin.saml.v3.util.MetaDataXMLPrinter;
+import com.dotcms.plugin.saml.v3.util.SamlLogger;
+import com.dotcms.plugin.saml.v3.util.SamlUtils;
 import com.dotcms.plugin.saml.v3.util.SiteIdpConfigResolver;
 import com.dotcms.repackage.com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang.StringUtils;
@@ -69,18 +73,17 @@ public class SamlAccessFilter extends SamlFilter implements Filter {
 				contentletAPI, userWebAPI, loginService);
 	}
 
-	private HttpSession getSession (final HttpServletRequest httpServletRequest) {
-
-		HttpSession session = httpServletRequest.getSession(false);
-		return session != null? session: httpServletRequest.getSession(true);
-	}
-
 	@Override
 	public void doFilter(final ServletRequest servletRequest, final ServletResponse servletResponse,
 			final FilterChain chain) throws IOException, ServletException {
 		final HttpServletResponse httpServletResponse = (HttpServletResponse) servletResponse;
 		final HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
-		HttpSession session = this.getSession(httpServletRequest);
+		// No session is created here: an anonymous visitor sent to the IdP
+		// does not need one, the AuthnRequest is tracked by its id. The by
+		// pass does, it is kept in the session for the next requests (login
+		// form, back-end assets).
+		HttpSession session = (null != httpServletRequest.getParameter(BY_PASS_KEY))
+				? httpServletRequest.getSession(true) : httpServletRequest.getSession(false);
 		String redirectAfterLogin = null;
 		boolean isLogoutNeed = false;
 
@@ -91,20 +94,21 @@ public class SamlAccessFilter extends SamlFilter implements Filter {
 		}
 
 		try {
-			final IdpConfig idpConfig = SiteIdpConfigResolver.getInstance().resolveIdpConfig(httpServletRequest);
+			// One lookup decides: the site config, the default one, or no SAML processing.
+			final SiteRoute route = SiteIdpConfigResolver.getInstance().resolveRoute(httpServletRequest);
 
-			// If idpConfig is null, means this site does not need SAML
-			// processing
-			if (idpConfig != null && idpConfig.isEnabled()) {
+			if (route.isSamlEnabled()) {
+				final IdpConfig idpConfig = route.getIdpConfig();
 				isLogoutNeed = DotsamlPropertiesService.getOptionBoolean(idpConfig,
 						DotsamlPropertyName.DOTCMS_SAML_IS_LOGOUT_NEED);
 
+				final IdpPathMatcher pathMatcher = EndpointHelper.getPathMatcher(idpConfig);
+
 				// check if there is any exception filter path, to avoid to
 				// canApply all the logic.
-				if (!super.checkAccessFilters(httpServletRequest.getRequestURI(),
-						EndpointHelper.getAccessFilterArray(idpConfig))
-						&& super.checkIncludePath(httpServletRequest.getRequestURI(),
-								EndpointHelper.getIncludePathArray(idpConfig), httpServletRequest)) {
+				if (!super.checkAccessFilters(httpServletRequest.getRequestURI(), pathMatcher)
+						&& super.checkIncludePath(httpServletRequest.getRequestURI(), pathMatcher,
+								httpServletRequest)) {
 					// if it is an url to canApply the Saml access logic,
 					// determine if the autoLogin is possible
 					// the autologin will works if the SAMLArt (Saml artifact
@@ -140,8 +144,13 @@ public class SamlAccessFilter extends SamlFilter implements Filter {
 						Logger.debug(this.getClass(),
 								"Executing SAML Login Redirection with request: " + redirectAfterLogin);
 
-						// if we don't have a redirect yet
-						if (null != session) {
+						// if we don't have a session, the path goes to the IdP
+						// as the RelayState, unless it does not fit.
+						if (null == session && SamlUtils.isRelayStatePath(redirectAfterLogin)) {
+							httpServletRequest.setAttribute(DotSamlConstants.DOT_SAML_RELAY_STATE_ATTRIBUTE,
+									redirectAfterLogin);
+						} else {
+							session = (null != session) ? session : httpServletRequest.getSession(true);
 							session.setAttribute(WebKeys.REDIRECT_AFTER_LOGIN, redirectAfterLogin);
 							session.setAttribute(ORIGINAL_REQUEST, originalRequest);
 						}
@@ -164,23 +173,25 @@ public class SamlAccessFilter extends SamlFilter implements Filter {
 
 				// Starting the logout
 				// if it is logout
-                Logger.debug(this, "----------------------------- doFilter --------------------------------");
-				Logger.debug(this, "- isLogoutNeed = " + isLogoutNeed);
-                Logger.debug(this, "- httpServletRequest.getRequestURI() = " + httpServletRequest.getRequestURI());
+				if (SamlLogger.isDebugEnabled(this.getClass())) {
+					Logger.debug(this, "----------------------------- doFilter --------------------------------");
+					Logger.debug(this, "- isLogoutNeed = " + isLogoutNeed);
+					Logger.debug(this, "- httpServletRequest.getRequestURI() = " + httpServletRequest.getRequestURI());
+				}
 				if (isLogoutNeed && session != null && super.isLogoutRequest(httpServletRequest.getRequestURI(),
-						EndpointHelper.getLogoutPathArray(idpConfig))) {
+						pathMatcher)) {
 					if (super.doLogout(httpServletResponse, httpServletRequest, session, idpConfig)) {
 						return;
 					}
 				}
 
 			} else {
-				Logger.info(this, "No idpConfig for site '" + httpServletRequest.getServerName()
+				SamlLogger.debug(this, () -> "SAML is " + route.getState() + " for site '" + httpServletRequest.getServerName()
 						+ "'. No SAML filtering for this request: " + httpServletRequest.getRequestURI());
 			}
 
 		} catch (final JSONException | DotDataException exception) {
-			Logger.debug(this, "Error [" + exception.getMessage() + "] Unable to get idpConfig for Site '" +
+			SamlLogger.debug(this, () -> "Error [" + exception.getMessage() + "] Unable to get idpConfig for Site '" +
 					httpServletRequest.getServerName() + "'. Incoming URL: " + httpServletRequest.getRequestURL());
 		}
 
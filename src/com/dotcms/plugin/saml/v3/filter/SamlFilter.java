@@ -30,6 +30,7 @@ import org.opensaml.saml.saml2.metadata.EntityDescriptor;
 
 import com.dotcms.cms.login.LoginServiceAPI;
 import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.config.IdpPathMatcher;
 import com.dotcms.plugin.saml.v3.config.MetaDataHelper;
 import com.dotcms.plugin.saml.v3.init.Initializer;
 import com.dotcms.plugin.saml.v3.init.SamlInitializer;
@@ -38,6 +39,7 @@ import com.dotcms.plugin.saml.v3.service.OpenSamlAuthenticationServiceImpl;
 import com.dotcms.plugin.saml.v3.service.SamlAuthenticationService;
 import com.dotcms.plugin.saml.v3.util.InstanceUtil;
 import com.dotcms.plugin.saml.v3.util.MetaDataXMLPrinter;
+import com.dotcms.plugin.saml.v3.util.SamlLogger;
 import com.dotcms.plugin.saml.v3.util.SamlUtils;
 import com.dotcms.repackage.com.google.common.annotations.VisibleForTesting;
 import com.dotcms.repackage.org.apache.commons.io.IOUtils;
@@ -147,6 +149,20 @@ public class SamlFilter implements Filter {
 		return filter;
 	}
 
+	/**
+	 * Same as {@link #checkAccessFilters(String, String[])} but with the
+	 * access filter paths already compiled.
+	 * 
+	 * @param uri
+	 *            {@link String}
+	 * @param pathMatcher
+	 *            {@link IdpPathMatcher}
+	 * @return boolean
+	 */
+	protected boolean checkAccessFilters(final String uri, final IdpPathMatcher pathMatcher) {
+		return pathMatcher.isAccessFiltered(uri);
+	}
+
 	/**
 	 * Determine if the path is Backend Admin, usually it is for /c && /admin or
 	 * if the path is a file or path, will check if the user has permission
@@ -165,7 +181,7 @@ public class SamlFilter implements Filter {
 
 		// this is the backend uri test.
 		for (String includePath : includePaths) {
-			Logger.debug(this, "Evaluating URI '" + uri + "' with pattern: " + includePath);
+			SamlLogger.debug(this, () -> "Evaluating URI '" + uri + "' with pattern: " + includePath);
 
 			include |= RegEX.contains(uri, includePath);
 		}
@@ -175,6 +191,27 @@ public class SamlFilter implements Filter {
 		return include;
 	}
 
+	/**
+	 * Same as {@link #checkIncludePath(String, String[], HttpServletRequest)}
+	 * but with the include paths already compiled.
+	 * 
+	 * @param uri
+	 *            {@link String}
+	 * @param pathMatcher
+	 *            {@link IdpPathMatcher}
+	 * @param request
+	 *            {@link HttpServletRequest}
+	 * @return boolean
+	 */
+	protected boolean checkIncludePath(final String uri, final IdpPathMatcher pathMatcher,
+			final HttpServletRequest request) {
+		final boolean include = pathMatcher.isIncluded(uri);
+
+		SamlLogger.debug(this, () -> "Incoming URI '" + uri + "', include? " + include);
+
+		return include;
+	}
+
 	protected boolean isByPass(final HttpServletRequest request, final HttpSession session) {
 		String byPass = request.getParameter(BY_PASS_KEY);
 
@@ -280,8 +317,8 @@ public class SamlFilter implements Filter {
 
 	public boolean isLogoutRequest(final String requestURI, final String[] logoutPathArray) {
 		Logger.debug(this, "----------------------------- isLogoutRequest --------------------------------");
-		Logger.debug(this, "- requestURI = " + requestURI);
-        Logger.debug(this, "- logoutPathArray = " + Arrays.asList(logoutPathArray));
+		SamlLogger.debug(this, () -> "- requestURI = " + requestURI);
+		SamlLogger.debug(this, () -> "- logoutPathArray = " + Arrays.toString(logoutPathArray));
 		boolean isLogoutRequest = false;
 
 		if (null != logoutPathArray) {
@@ -295,6 +332,23 @@ public class SamlFilter implements Filter {
 		return isLogoutRequest;
 	}
 
+	/**
+	 * Same as {@link #isLogoutRequest(String, String[])} but with the logout
+	 * paths already compiled.
+	 * 
+	 * @param requestURI
+	 *            {@link String}
+	 * @param pathMatcher
+	 *            {@link IdpPathMatcher}
+	 * @return boolean
+	 */
+	public boolean isLogoutRequest(final String requestURI, final IdpPathMatcher pathMatcher) {
+		final boolean isLogoutRequest = pathMatcher.isLogoutPath(requestURI);
+
+		SamlLogger.debug(this, () -> "- isLogoutRequest = " + isLogoutRequest);
+		return isLogoutRequest;
+	}
+
 	public void doRequestLoginSecurityLog(final HttpServletRequest request, final IdpConfig idpConfig) {
 		try {
 			final Host host = this.hostWebAPI.getCurrentHost(request);
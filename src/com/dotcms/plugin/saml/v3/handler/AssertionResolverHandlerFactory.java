@@ -49,7 +49,7 @@ public class AssertionResolverHandlerFactory implements Serializable {
 	}
 
 	private AssertionResolverHandler getDefaultAssertionResolverHandler() {
-		return this.getAssertionResolverHandler(HttpPostAssertionResolverHandlerImpl.class.getName());
+		return this.getAssertionResolverHandler(StreamingHttpPostAssertionResolverHandlerImpl.class.getName());
 	}
 
 	private AssertionResolverHandler getAssertionResolverHandler(final String className) {
@@ -2,7 +2,6 @@ package com.dotcms.plugin.saml.v3.handler;
 
 import static com.dotcms.plugin.saml.v3.util.SamlUtils.getAssertion;
 import static com.dotcms.plugin.saml.v3.util.SamlUtils.invokeMessageHandlerChain;
-import static com.dotcms.plugin.saml.v3.util.SamlUtils.toXMLObjectString;
 import static com.dotcms.plugin.saml.v3.util.SamlUtils.verifyAssertionSignature;
 import static com.dotcms.plugin.saml.v3.util.SamlUtils.verifyResponseSignature;
 import static com.dotmarketing.util.UtilMethods.isSet;
@@ -30,9 +29,14 @@ import org.opensaml.saml.saml2.core.StatusCode;
 
 import com.dotcms.plugin.saml.v3.config.IdpConfig;
 import com.dotcms.plugin.saml.v3.exception.DotSamlException;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
 import com.dotcms.plugin.saml.v3.parameters.DotsamlPropertiesService;
 import com.dotcms.plugin.saml.v3.parameters.DotsamlPropertyName;
+import com.dotcms.plugin.saml.v3.util.OutstandingRequestStore;
+import com.dotcms.plugin.saml.v3.util.SamlLogger;
+import com.dotcms.plugin.saml.v3.util.SamlReplayCache;
 import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.json.JSONException;
 
@@ -48,7 +52,7 @@ public class HttpPostAssertionResolverHandlerImpl implements AssertionResolverHa
 	private static final long serialVersionUID = 3479922364325870009L;
 
 	// This is the key to get the saml response from the request.
-	private static final String SAML_RESPONSE_KEY = "SAMLResponse";
+	protected static final String SAML_RESPONSE_KEY = "SAMLResponse";
 
 	@Override
 	public boolean isValidSamlRequest(final HttpServletRequest request, final HttpServletResponse response,
@@ -60,40 +64,35 @@ public class HttpPostAssertionResolverHandlerImpl implements AssertionResolverHa
 	public Assertion resolveAssertion(final HttpServletRequest request, final HttpServletResponse response,
 			IdpConfig idpConfig) throws DotDataException, IOException, JSONException {
 		Assertion assertion = null;
-		HTTPPostDecoder decoder = new HTTPPostDecoder();
-		MessageContext<SAMLObject> messageContext = null;
-		Response samlResponse = null;
 
 		Logger.debug(this, "Resolving SAML Artifact with AssertionResolverHandler implementation: " + this.getClass());
 
-		try {
-			Logger.debug(this, "Decoding the Post message: " + request.getParameter(SAML_RESPONSE_KEY));
+		final MessageContext<SAMLObject> messageContext = this.decodeMessageContext(request, idpConfig);
+		final Response samlResponse = (Response) messageContext.getMessage();
 
-			decoder.setHttpServletRequest(request);
-			decoder.setParserPool(XMLObjectProviderRegistrySupport.getParserPool());
+		SamlLogger.debugXml(this, "Post message context decoded:", samlResponse);
 
-			decoder.initialize();
-			decoder.decode();
-
-			messageContext = decoder.getMessageContext();
-			samlResponse = (Response) messageContext.getMessage();
+		final long clockSkew = this.getClockSkew(idpConfig);
+		final long lifeTime = this.getLifeTime(idpConfig);
 
-			Logger.debug(this, "Post message context decoded:");
-			Logger.debug(this, "\n\n" + toXMLObjectString(samlResponse));
+		this.validateDestinationAndLifetime(messageContext, request, clockSkew, lifeTime);
 
-		} catch (ComponentInitializationException | MessageDecodingException e) {
-			Logger.error(this, "Error decoding inbound message context for IdP '" + idpConfig.getIdpName() + "'", e);
-			throw new DotSamlException(e.getMessage(), e);
-		} finally {
-			decoder.destroy();
+		// A replayed response is rejected before the decryption and the signature validation.
+		if (SamlReplayCache.getInstance().isReplayed(idpConfig, samlResponse.getID())) {
+			Logger.warn(this, "Replayed SAML Response for IdP '" + idpConfig.getIdpName() + "', id: " + samlResponse.getID());
+			throw new DotSamlException("The SAML Response has already been used: " + samlResponse.getID());
 		}
 
-		this.validateDestinationAndLifetime(messageContext, request, idpConfig);
+		final boolean validateInResponseTo = OutstandingRequestStore.getInstance().isEnabled();
+		final String inResponseTo = samlResponse.getInResponseTo();
+
+		if (validateInResponseTo) {
+			this.validateInResponseTo(idpConfig, inResponseTo);
+		}
 
 		assertion = getAssertion(samlResponse, idpConfig);
 
-		Logger.debug(this, "Decrypted Assertion:");
-		Logger.debug(this, "\n\n" + toXMLObjectString(assertion));
+		SamlLogger.debugXml(this, "Decrypted Assertion:", assertion);
 
 		// Verify Signatures.
 		verifyResponseSignature(samlResponse, idpConfig);
@@ -101,9 +100,68 @@ public class HttpPostAssertionResolverHandlerImpl implements AssertionResolverHa
 
 		this.verifyStatus(samlResponse);
 
+		// Only valid responses are recorded, until the lifetime check would reject them.
+		SamlReplayCache.getInstance().consume(idpConfig,
+				samlResponse.getIssueInstant().getMillis() + lifeTime + clockSkew, samlResponse.getID(), assertion.getID());
+
+		// Only one response per AuthnRequest.
+		if (validateInResponseTo && null != inResponseTo
+				&& !OutstandingRequestStore.getInstance().complete(idpConfig, inResponseTo)) {
+			throw new DotSamlException("The SAML request has already been answered: " + inResponseTo);
+		}
+
 		return assertion;
 	}
 
+	/**
+	 * Decodes the SAMLResponse of the request into a message context with the
+	 * {@link Response} as the message.
+	 */
+	protected MessageContext<SAMLObject> decodeMessageContext(final HttpServletRequest request,
+			final IdpConfig idpConfig) {
+		final HTTPPostDecoder decoder = new HTTPPostDecoder();
+
+		try {
+			SamlLogger.debug(this, () -> "Decoding the Post message: " + request.getParameter(SAML_RESPONSE_KEY));
+
+			decoder.setHttpServletRequest(request);
+			decoder.setParserPool(XMLObjectProviderRegistrySupport.getParserPool());
+
+			decoder.initialize();
+			decoder.decode();
+
+			return decoder.getMessageContext();
+		} catch (ComponentInitializationException | MessageDecodingException e) {
+			Logger.error(this, "Error decoding inbound message context for IdP '" + idpConfig.getIdpName() + "'", e);
+			throw new DotSamlException(e.getMessage(), e);
+		} finally {
+			decoder.destroy();
+		}
+	}
+
+	/**
+	 * Checks the response answers an AuthnRequest sent by this node that is
+	 * still outstanding. A response without InResponseTo is an IdP initiated
+	 * login, it is accepted unless
+	 * {@link DotSamlConstants#DOT_SAML_ALLOW_UNSOLICITED_RESPONSES} is false.
+	 */
+	private void validateInResponseTo(final IdpConfig idpConfig, final String inResponseTo) {
+		if (null == inResponseTo) {
+			if (!Config.getBooleanProperty(DotSamlConstants.DOT_SAML_ALLOW_UNSOLICITED_RESPONSES, true)) {
+				Logger.warn(this, "Unsolicited SAML Response for IdP '" + idpConfig.getIdpName() + "' rejected");
+				throw new DotSamlException("Unsolicited SAML Responses are not allowed");
+			}
+
+			return;
+		}
+
+		if (!OutstandingRequestStore.getInstance().isOutstanding(idpConfig, inResponseTo)) {
+			Logger.warn(this, "SAML Response for IdP '" + idpConfig.getIdpName()
+					+ "' does not answer an outstanding request, InResponseTo: " + inResponseTo);
+			throw new DotSamlException("The SAML Response does not answer an outstanding request: " + inResponseTo);
+		}
+	}
+
 	private void verifyStatus(final Response response) {
 		final Status status = response.getStatus();
 		final StatusCode statusCode = status.getStatusCode();
@@ -115,13 +173,10 @@ public class HttpPostAssertionResolverHandlerImpl implements AssertionResolverHa
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private void validateDestinationAndLifetime(final MessageContext<SAMLObject> context,
-			final HttpServletRequest request, final IdpConfig idpConfig) {
+	private long getClockSkew(final IdpConfig idpConfig) {
 
 		// Just setting it to a value in case of exception.
 		long clockSkew = DOT_SAML_CLOCK_SKEW_DEFAULT_VALUE;
-		long lifeTime = DOT_SAML_MESSAGE_LIFE_DEFAULT_VALUE;
 
 		try {
 			Integer intClockSkew = DotsamlPropertiesService.getOptionInteger(idpConfig,
@@ -136,6 +191,14 @@ public class HttpPostAssertionResolverHandlerImpl implements AssertionResolverHa
 					"Optional property not set: " + DotsamlPropertyName.DOT_SAML_CLOCK_SKEW + ". Using default.");
 		}
 
+		return clockSkew;
+	}
+
+	private long getLifeTime(final IdpConfig idpConfig) {
+
+		// Just setting it to a value in case of exception.
+		long lifeTime = DOT_SAML_MESSAGE_LIFE_DEFAULT_VALUE;
+
 		try {
 
 			Integer intLifeTime = DotsamlPropertiesService.getOptionInteger(idpConfig,
@@ -150,6 +213,13 @@ public class HttpPostAssertionResolverHandlerImpl implements AssertionResolverHa
 					+ DotsamlPropertyName.DOT_SAML_MESSAGE_LIFE_TIME.getPropertyName() + ". Using default.");
 		}
 
+		return lifeTime;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void validateDestinationAndLifetime(final MessageContext<SAMLObject> context,
+			final HttpServletRequest request, final long clockSkew, final long lifeTime) {
+
 		final SAMLMessageInfoContext messageInfoContext = context.getSubcontext(SAMLMessageInfoContext.class, true);
 		final MessageLifetimeSecurityHandler lifetimeSecurityHandler = new MessageLifetimeSecurityHandler();
 		final BasicMessageHandlerChain<SAMLObject> handlerChain = new BasicMessageHandlerChain<SAMLObject>();
@@ -0,0 +1,162 @@
+package com.dotcms.plugin.saml.v3.handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.messaging.context.MessageContext;
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.saml2.core.Response;
+
+import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.exception.DotSamlException;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+import com.dotcms.plugin.saml.v3.util.SamlLogger;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+
+/**
+ * Handles the http post decoding the SAMLResponse as it is parsed: the Base64
+ * characters of the form parameter are decoded into the parser, instead of
+ * being copied to a byte array and a byte stream first. The response size is
+ * capped with {@link DotSamlConstants#DOT_SAML_RESPONSE_MAX_SIZE}, an
+ * oversized response is rejected before it is decoded, or as soon as the
+ * parser reads past the limit. As with the HTTP-POST binding decoder, only
+ * POST requests are accepted.
+ */
+public class StreamingHttpPostAssertionResolverHandlerImpl extends HttpPostAssertionResolverHandlerImpl {
+	private static final long serialVersionUID = -2911093740517412688L;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected MessageContext<SAMLObject> decodeMessageContext(final HttpServletRequest request,
+			final IdpConfig idpConfig) {
+		// as HTTPPostDecoder does, a SAMLResponse in the query string would end up in access logs and caches.
+		if (!"POST".equalsIgnoreCase(request.getMethod())) {
+			throw new DotSamlException("The " + SAML_RESPONSE_KEY + " is only accepted with the HTTP POST method, got: "
+					+ request.getMethod());
+		}
+
+		final String encodedResponse = request.getParameter(SAML_RESPONSE_KEY);
+		final long maxSize = Config.getIntProperty(DotSamlConstants.DOT_SAML_RESPONSE_MAX_SIZE,
+				DotSamlConstants.DOT_SAML_RESPONSE_MAX_SIZE_DEFAULT_VALUE);
+		// Base64 is 4 characters per 3 bytes.
+		final long maxEncodedLength = (maxSize + 2) / 3 * 4;
+
+		if (null == encodedResponse) {
+			throw new DotSamlException("No " + SAML_RESPONSE_KEY + " in the request");
+		}
+
+		// Allows for the line breaks some IdPs add every 76 characters.
+		if (encodedResponse.length() > maxEncodedLength + maxEncodedLength / 76 * 2 + 2) {
+			throw this.tooLarge(idpConfig, maxSize);
+		}
+
+		SamlLogger.debug(this, () -> "Decoding the Post message: " + encodedResponse);
+
+		final XMLObject message;
+
+		try (InputStream inputStream = Base64.getMimeDecoder()
+				.wrap(new Base64CharsInputStream(encodedResponse, maxEncodedLength))) {
+			message = XMLObjectSupport.unmarshallFromInputStream(XMLObjectProviderRegistrySupport.getParserPool(),
+					inputStream);
+		} catch (ResponseTooLargeException e) {
+			throw this.tooLarge(idpConfig, maxSize);
+		} catch (XMLParserException | UnmarshallingException | IOException | IllegalArgumentException e) {
+			// the parser wraps the errors of the stream.
+			if (e.getCause() instanceof ResponseTooLargeException) {
+				throw this.tooLarge(idpConfig, maxSize);
+			}
+
+			Logger.error(this, "Error decoding inbound message context for IdP '" + idpConfig.getIdpName() + "'", e);
+			throw new DotSamlException(e.getMessage(), e);
+		}
+
+		if (!(message instanceof Response)) {
+			throw new DotSamlException("The " + SAML_RESPONSE_KEY + " is not a SAML Response: "
+					+ message.getElementQName());
+		}
+
+		final MessageContext<SAMLObject> messageContext = new MessageContext<>();
+
+		messageContext.setMessage((Response) message);
+
+		return messageContext;
+	}
+
+	private DotSamlException tooLarge(final IdpConfig idpConfig, final long maxSize) {
+		Logger.warn(this, "SAMLResponse for IdP '" + idpConfig.getIdpName() + "' is bigger than " + maxSize
+				+ " bytes. Consider raising: " + DotSamlConstants.DOT_SAML_RESPONSE_MAX_SIZE);
+
+		return new DotSamlException("The " + SAML_RESPONSE_KEY + " is too large");
+	}
+
+	/**
+	 * Reads the characters of a Base64 string as bytes, without copying it,
+	 * and fails once it has read more than the allowed Base64 characters.
+	 */
+	private static final class Base64CharsInputStream extends InputStream {
+		private final CharSequence chars;
+		private final long maxEncodedLength;
+
+		private int position = 0;
+		private long encodedLength = 0;
+
+		private Base64CharsInputStream(final CharSequence chars, final long maxEncodedLength) {
+			this.chars = chars;
+			this.maxEncodedLength = maxEncodedLength;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (this.position >= this.chars.length()) {
+				return -1;
+			}
+
+			final char c = this.chars.charAt(this.position++);
+
+			if (c >= 0x80) {
+				throw new IOException("Invalid character in the " + SAML_RESPONSE_KEY);
+			}
+
+			if (!Character.isWhitespace(c) && ++this.encodedLength > this.maxEncodedLength) {
+				throw new ResponseTooLargeException();
+			}
+
+			return c;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+
+			int count = 0;
+
+			while (count < length) {
+				final int b = this.read();
+
+				if (b < 0) {
+					break;
+				}
+
+				bytes[offset + count++] = (byte) b;
+			}
+
+			return (count > 0) ? count : -1;
+		}
+	}
+
+	private static final class ResponseTooLargeException extends IOException {
+		private static final long serialVersionUID = 4526006384811702130L;
+	}
+}
@@ -1,22 +1,37 @@
 package com.dotcms.plugin.saml.v3.init;
 
 import com.dotcms.plugin.saml.v3.config.IdpConfigHelper;
+import com.dotcms.plugin.saml.v3.config.IdpConfigWatcher;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
 import com.dotcms.plugin.saml.v3.parameters.DotsamlDefaultPropertiesService;
 import com.dotcms.plugin.saml.v3.rest.DotSamlRestService;
+import com.dotcms.plugin.saml.v3.util.HostAliasIndexContentletHook;
+import com.dotcms.plugin.saml.v3.util.InstrumentedParserPool;
+import com.dotcms.plugin.saml.v3.util.SamlMetricsLogReporter;
+import com.codahale.metrics.SharedMetricRegistries;
+import org.apache.commons.lang.StringUtils;
 import org.tuckey.web.filters.urlrewrite.NormalRule;
+import com.dotmarketing.business.APILocator;
 import com.dotmarketing.filters.DotUrlRewriteFilter;
+import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
 import com.dotmarketing.util.json.JSONException;
-import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.xml.ParserPool;
 import org.opensaml.core.config.InitializationException;
 import org.opensaml.core.config.InitializationService;
 import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
 import org.opensaml.xmlsec.config.JavaCryptoValidationInitializer;
 
+import javax.xml.XMLConstants;
 import java.io.IOException;
 import java.security.Provider;
 import java.security.Security;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -62,8 +77,8 @@ public class SamlInitializer implements Initializer
 
 		try
 		{
-			// Force a cache/file system read to initialize cache.
-			IdpConfigHelper.getInstance().getIdpConfigs();
+			// Reads the config ids (migrating or creating the storage if needed), the configs are loaded on first lookup.
+			IdpConfigHelper.getInstance().getIdpConfigIds();
 		}
 		catch ( JSONException | IOException exception )
 		{
@@ -74,16 +89,23 @@ public class SamlInitializer implements Initializer
 		{
 			Logger.info( this, "Initializing..." );
 			InitializationService.initialize();
-			
-			if (XMLObjectProviderRegistrySupport.getParserPool() == null ) {
-				XMLObjectProviderRegistrySupport.setParserPool(new BasicParserPool());
-			}
+
+			// Replaces the default pool with the configured and instrumented one.
+			XMLObjectProviderRegistrySupport.setParserPool( createParserPool() );
 		}
 		catch ( InitializationException e )
 		{
 			throw new RuntimeException( "Initialization failed", e );
 		}
 
+		startMetricsLogReporter();
+
+		// Keeps the host/alias index used to resolve the site of a request up to date.
+		addHostAliasIndexHook();
+
+		// Picks up changes made to the saml config, metadata and certificate files outside this node.
+		startIdpConfigWatcher();
+
 		// Tuckey rewrite to route /dotsaml/login/* to /api/dotsaml/login/*
 		// and /dotsaml/metadata/* to /api/dotsaml/metadata/*
 		addDotsamlRestServiceRedirect();
@@ -91,6 +113,98 @@ public class SamlInitializer implements Initializer
 		this.initDone.set( true );
 	}
 
+	private ParserPool createParserPool() throws InitializationException
+	{
+		final InstrumentedParserPool parserPool = new InstrumentedParserPool( SharedMetricRegistries.getOrCreate( DotSamlConstants.DOT_SAML_METRIC_REGISTRY ) );
+		final Map<String, Boolean> builderFeatures = new HashMap<>( parserPool.getBuilderFeatures() );
+
+		parserPool.setMaxPoolSize( Config.getIntProperty( DotSamlConstants.DOT_SAML_PARSER_POOL_MAX_SIZE, DotSamlConstants.DOT_SAML_PARSER_POOL_MAX_SIZE_DEFAULT_VALUE ) );
+
+		getNameValues( DotSamlConstants.DOT_SAML_PARSER_POOL_BUILDER_FEATURES ).forEach( ( name, value ) -> builderFeatures.put( name, Boolean.valueOf( value ) ) );
+		parserPool.setBuilderFeatures( builderFeatures );
+		parserPool.setBuilderAttributes( new HashMap<>( getNameValues( DotSamlConstants.DOT_SAML_PARSER_POOL_BUILDER_ATTRIBUTES ) ) );
+
+		if ( !Boolean.TRUE.equals( builderFeatures.get( XMLConstants.FEATURE_SECURE_PROCESSING ) ) )
+		{
+			Logger.warn( this, "Secure processing is off for the SAML XML parsers, set in: " + DotSamlConstants.DOT_SAML_PARSER_POOL_BUILDER_FEATURES );
+		}
+
+		try
+		{
+			parserPool.initialize();
+		}
+		catch ( ComponentInitializationException exception )
+		{
+			throw new InitializationException( "Could not initialize the SAML parser pool", exception );
+		}
+
+		parserPool.prewarm( Config.getIntProperty( DotSamlConstants.DOT_SAML_PARSER_POOL_PREWARM_SIZE, DotSamlConstants.DOT_SAML_PARSER_POOL_PREWARM_SIZE_DEFAULT_VALUE ) );
+
+		return parserPool;
+	}
+
+	/**
+	 * Reads a comma separated list of <code>name=value</code> pairs.
+	 */
+	private Map<String, String> getNameValues( final String key )
+	{
+		final Map<String, String> nameValues = new LinkedHashMap<>();
+		final String property = Config.getStringProperty( key, null );
+
+		if ( UtilMethods.isSet( property ) )
+		{
+			for ( String nameValue : StringUtils.split( property, DotSamlConstants.ARRAY_SEPARATOR_CHAR ) )
+			{
+				final int separator = nameValue.indexOf( '=' );
+
+				if ( separator > 0 )
+				{
+					nameValues.put( nameValue.substring( 0, separator ).trim(), nameValue.substring( separator + 1 ).trim() );
+				}
+				else
+				{
+					Logger.warn( this, "Ignoring '" + nameValue + "' in " + key + ", it is not name=value" );
+				}
+			}
+		}
+
+		return nameValues;
+	}
+
+	private void startMetricsLogReporter()
+	{
+		final int logSeconds = Config.getIntProperty( DotSamlConstants.DOT_SAML_METRICS_LOG_SECONDS, 0 );
+
+		if ( logSeconds > 0 )
+		{
+			new SamlMetricsLogReporter( SharedMetricRegistries.getOrCreate( DotSamlConstants.DOT_SAML_METRIC_REGISTRY ) ).start( logSeconds, TimeUnit.SECONDS );
+		}
+	}
+
+	private void addHostAliasIndexHook()
+	{
+		try
+		{
+			APILocator.getContentletAPIntercepter().addPostHook( new HostAliasIndexContentletHook() );
+		}
+		catch ( Exception exception )
+		{
+			Logger.error( this, "Could not add the host alias index hook. Host changes will be picked up when the index expires.", exception );
+		}
+	}
+
+	private void startIdpConfigWatcher()
+	{
+		try
+		{
+			IdpConfigWatcher.getInstance().start();
+		}
+		catch ( Exception exception )
+		{
+			Logger.error( this, "Could not start the SAML config watcher. Changes made on other nodes will need a cache clear.", exception );
+		}
+	}
+
 	private void addDotsamlRestServiceRedirect() {
 		NormalRule rule = new NormalRule();
 		rule.setFrom("^\\/dotsaml\\/("+String.join("|", DotSamlRestService.dotsamlPathSegments)+")\\/(.+)$");
@@ -81,5 +81,246 @@ public class DotSamlConstants {
 	 * Default SAML User role
 	 */
 	public static final String DOTCMS_SAML_USER_ROLE = "SAML User";
-	
+
+	/**
+	 * Key to configure (in seconds) how old the host/alias index used to
+	 * resolve the site of a request might get before it is rebuilt. Host
+	 * changes on this node update it right away, this covers changes made on
+	 * other nodes of a cluster.
+	 */
+	public static final String DOT_SAML_HOST_INDEX_MAX_AGE_SECONDS = "dotsaml.host.index.maxage.seconds";
+
+	/**
+	 * Default value for {@link #DOT_SAML_HOST_INDEX_MAX_AGE_SECONDS}
+	 */
+	public static final int DOT_SAML_HOST_INDEX_MAX_AGE_SECONDS_DEFAULT_VALUE = 300;
+
+	/**
+	 * Key to enable or disable the watcher that reloads the SAML config file,
+	 * the metadata files and the certificates when they change on disk (for
+	 * instance, on other nodes sharing the assets directory).
+	 */
+	public static final String DOT_SAML_CONFIG_WATCHER_ENABLED = "dotsaml.config.watcher.enabled";
+
+	/**
+	 * Key to configure (in milliseconds) how long the config watcher waits for
+	 * more changes before it applies them, so a file written in several steps
+	 * is reloaded only once.
+	 */
+	public static final String DOT_SAML_CONFIG_WATCHER_DEBOUNCE_MILLIS = "dotsaml.config.watcher.debounce.millis";
+
+	/**
+	 * Default value for {@link #DOT_SAML_CONFIG_WATCHER_DEBOUNCE_MILLIS}
+	 */
+	public static final int DOT_SAML_CONFIG_WATCHER_DEBOUNCE_MILLIS_DEFAULT_VALUE = 500;
+
+	/**
+	 * Key to configure (in seconds) how often the config watcher also checks
+	 * the size and modification time of the SAML files, since file system
+	 * events are not raised for files written by other hosts on network
+	 * mounts (NFS, SMB). 0 disables the polling.
+	 */
+	public static final String DOT_SAML_CONFIG_WATCHER_POLL_SECONDS = "dotsaml.config.watcher.poll.seconds";
+
+	/**
+	 * Default value for {@link #DOT_SAML_CONFIG_WATCHER_POLL_SECONDS}
+	 */
+	public static final int DOT_SAML_CONFIG_WATCHER_POLL_SECONDS_DEFAULT_VALUE = 60;
+
+	/**
+	 * By default the IdP configs are stored in the saml asset directory
+	 * ({@link com.dotcms.plugin.saml.v3.config.FileIdpConfigRepository}). To
+	 * store them in the dotCMS database set
+	 * {@link com.dotcms.plugin.saml.v3.config.DatabaseIdpConfigRepository}, or
+	 * your own implementation of
+	 * {@link com.dotcms.plugin.saml.v3.config.IdpConfigRepository}, with this
+	 * property.
+	 */
+	public static final String DOT_SAML_IDP_CONFIG_REPOSITORY_CLASS_NAME = "dotsaml.idpconfig.repository.classname";
+
+	/**
+	 * Key to configure (in milliseconds) how long a config save waits for
+	 * other saves before they are all written together, so a burst of saves
+	 * writes the manifest only once.
+	 */
+	public static final String DOT_SAML_IDP_CONFIG_WRITE_WINDOW_MILLIS = "dotsaml.idpconfig.write.window.millis";
+
+	/**
+	 * Default value for {@link #DOT_SAML_IDP_CONFIG_WRITE_WINDOW_MILLIS}
+	 */
+	public static final int DOT_SAML_IDP_CONFIG_WRITE_WINDOW_MILLIS_DEFAULT_VALUE = 20;
+
+	/**
+	 * Key to configure how many consumed SAML Response and Assertion ids are
+	 * remembered to reject replayed responses. The memory is allocated up
+	 * front (about 32 bytes per id); when it is full of ids that have not
+	 * expired yet, new responses are rejected.
+	 */
+	public static final String DOT_SAML_REPLAY_CACHE_CAPACITY = "dotsaml.replay.cache.capacity";
+
+	/**
+	 * Default value for {@link #DOT_SAML_REPLAY_CACHE_CAPACITY}
+	 */
+	public static final int DOT_SAML_REPLAY_CACHE_CAPACITY_DEFAULT_VALUE = 100000;
+
+	/**
+	 * Key to configure how many AuthnRequest ids sent to the IdPs are
+	 * remembered, to check the InResponseTo of the responses. The memory is
+	 * allocated up front (about 32 bytes per id); when it is full, the logins
+	 * are still redirected to the IdP but their responses are rejected.
+	 */
+	public static final String DOT_SAML_AUTHN_REQUEST_CAPACITY = "dotsaml.authn.request.capacity";
+
+	/**
+	 * Default value for {@link #DOT_SAML_AUTHN_REQUEST_CAPACITY}
+	 */
+	public static final int DOT_SAML_AUTHN_REQUEST_CAPACITY_DEFAULT_VALUE = 100000;
+
+	/**
+	 * Key to configure (in seconds) how long a user has to log in on the IdP
+	 * before the AuthnRequest id is forgotten.
+	 */
+	public static final String DOT_SAML_AUTHN_REQUEST_TTL_SECONDS = "dotsaml.authn.request.ttl.seconds";
+
+	/**
+	 * Default value for {@link #DOT_SAML_AUTHN_REQUEST_TTL_SECONDS}
+	 */
+	public static final int DOT_SAML_AUTHN_REQUEST_TTL_SECONDS_DEFAULT_VALUE = 600;
+
+	/**
+	 * Key to turn on the InResponseTo check. The AuthnRequest ids are kept in
+	 * the memory of the node that sent them, and anonymous visitors get no
+	 * session to stick them to that node, so it is off by default.
+	 */
+	public static final String DOT_SAML_VALIDATE_IN_RESPONSE_TO = "dotsaml.validate.inresponseto";
+
+	/**
+	 * Default value for {@link #DOT_SAML_VALIDATE_IN_RESPONSE_TO}
+	 */
+	public static final boolean DOT_SAML_VALIDATE_IN_RESPONSE_TO_DEFAULT_VALUE = false;
+
+	/**
+	 * Key to reject the responses without InResponseTo (IdP initiated logins).
+	 * They are accepted by default.
+	 */
+	public static final String DOT_SAML_ALLOW_UNSOLICITED_RESPONSES = "dotsaml.allow.unsolicited.responses";
+
+	/**
+	 * RelayState (the original request) is only sent when it fits in the 80
+	 * bytes the SAML binding allows.
+	 */
+	public static final int DOT_SAML_RELAY_STATE_MAX_LENGTH = 80;
+
+	/**
+	 * Request attribute with the path to send the user to after the login,
+	 * when there is no session to keep it. It is sent to the IdP as the
+	 * RelayState.
+	 */
+	public static final String DOT_SAML_RELAY_STATE_ATTRIBUTE = "dotsaml.relaystate";
+
+	/**
+	 * Key to configure the maximum size (in bytes, once Base64 decoded) of a
+	 * SAMLResponse posted to the streaming assertion resolver handler; bigger
+	 * responses are rejected before they are parsed.
+	 */
+	public static final String DOT_SAML_RESPONSE_MAX_SIZE = "dotsaml.response.max.size";
+
+	/**
+	 * Default value for {@link #DOT_SAML_RESPONSE_MAX_SIZE}
+	 */
+	public static final int DOT_SAML_RESPONSE_MAX_SIZE_DEFAULT_VALUE = 1048576;
+
+	/**
+	 * Key to configure how many idle XML parsers (document builders) the
+	 * SAML parser pool keeps; under more concurrent logins than this, the
+	 * extra parsers are created and dropped on each use.
+	 */
+	public static final String DOT_SAML_PARSER_POOL_MAX_SIZE = "dotsaml.parser.pool.max.size";
+
+	/**
+	 * Default value for {@link #DOT_SAML_PARSER_POOL_MAX_SIZE}
+	 */
+	public static final int DOT_SAML_PARSER_POOL_MAX_SIZE_DEFAULT_VALUE = 20;
+
+	/**
+	 * Key to configure how many parsers are created when the plugin starts,
+	 * so the first logins do not pay for it.
+	 */
+	public static final String DOT_SAML_PARSER_POOL_PREWARM_SIZE = "dotsaml.parser.pool.prewarm.size";
+
+	/**
+	 * Default value for {@link #DOT_SAML_PARSER_POOL_PREWARM_SIZE}
+	 */
+	public static final int DOT_SAML_PARSER_POOL_PREWARM_SIZE_DEFAULT_VALUE = 2;
+
+	/**
+	 * Key to set parser features, as a comma separated list of
+	 * <code>feature-uri=true|false</code>. They are added to the secure
+	 * defaults of the pool (secure processing on, doctypes disallowed).
+	 */
+	public static final String DOT_SAML_PARSER_POOL_BUILDER_FEATURES = "dotsaml.parser.pool.builder.features";
+
+	/**
+	 * Key to set parser attributes, as a comma separated list of
+	 * <code>attribute-uri=value</code>.
+	 */
+	public static final String DOT_SAML_PARSER_POOL_BUILDER_ATTRIBUTES = "dotsaml.parser.pool.builder.attributes";
+
+	/**
+	 * Key to configure (in seconds) how often the SAML metrics (parser pool
+	 * checkout time, pool size, parsers created) are logged; 0 does not log
+	 * them, they are still available in the "dotsaml" shared metric registry.
+	 */
+	public static final String DOT_SAML_METRICS_LOG_SECONDS = "dotsaml.metrics.log.seconds";
+
+	/**
+	 * Name of the shared metric registry of the plugin.
+	 */
+	public static final String DOT_SAML_METRIC_REGISTRY = "dotsaml";
+
+	/**
+	 * Key to configure (in seconds) how long a login that provisions exactly
+	 * what the previous login of the user provisioned skips updating the user
+	 * and its roles. 0 updates them on every login.
+	 */
+	public static final String DOT_SAML_PROVISIONING_FINGERPRINT_TTL_SECONDS = "dotsaml.provisioning.fingerprint.ttl.seconds";
+
+	/**
+	 * Default value for {@link #DOT_SAML_PROVISIONING_FINGERPRINT_TTL_SECONDS}
+	 */
+	public static final int DOT_SAML_PROVISIONING_FINGERPRINT_TTL_SECONDS_DEFAULT_VALUE = 900;
+
+	/**
+	 * Key to configure how many users the provisioning fingerprints are kept
+	 * for, the least recently used are dropped.
+	 */
+	public static final String DOT_SAML_PROVISIONING_FINGERPRINT_CAPACITY = "dotsaml.provisioning.fingerprint.capacity";
+
+	/**
+	 * Default value for {@link #DOT_SAML_PROVISIONING_FINGERPRINT_CAPACITY}
+	 */
+	public static final int DOT_SAML_PROVISIONING_FINGERPRINT_CAPACITY_DEFAULT_VALUE = 10000;
+
+	/**
+	 * Key to configure (in seconds) how long an IdP role key that matches no
+	 * dotCMS role is remembered. 0 looks such keys up on every login.
+	 */
+	public static final String DOT_SAML_ROLE_CACHE_TTL_SECONDS = "dotsaml.role.cache.ttl.seconds";
+
+	/**
+	 * Default value for {@link #DOT_SAML_ROLE_CACHE_TTL_SECONDS}
+	 */
+	public static final int DOT_SAML_ROLE_CACHE_TTL_SECONDS_DEFAULT_VALUE = 300;
+
+	/**
+	 * Key to configure how many role keys without a role are remembered, the
+	 * least recently used are dropped.
+	 */
+	public static final String DOT_SAML_ROLE_CACHE_CAPACITY = "dotsaml.role.cache.capacity";
+
+	/**
+	 * Default value for {@link #DOT_SAML_ROLE_CACHE_CAPACITY}
+	 */
+	public static final int DOT_SAML_ROLE_CACHE_CAPACITY_DEFAULT_VALUE = 5000;
+
 }
@@ -0,0 +1,109 @@
+package com.dotcms.plugin.saml.v3.meta;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.util.FileFingerprint;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Keeps the parsed {@link MetadataBean} of each IdP, so the metadata xml is
+ * not unmarshalled on every call. Entries are keyed by the IdpConfig id and
+ * validated against the {@link FileFingerprint} of the metadata file (path,
+ * size, modification time and content hash); a stale entry is re-parsed on the
+ * next access.
+ */
+public class MetadataBeanCache implements Serializable {
+	private static final long serialVersionUID = -1788186306612418430L;
+
+	private static class SingletonHolder {
+		private static final MetadataBeanCache INSTANCE = new MetadataBeanCache();
+	}
+
+	public static MetadataBeanCache getInstance() {
+		return MetadataBeanCache.SingletonHolder.INSTANCE;
+	}
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the metadata for the idpConfig, parsing it with the loader only
+	 * if it is not cached yet or the metadata file has changed.
+	 *
+	 * @param idpConfig
+	 *            {@link IdpConfig}
+	 * @param loader
+	 *            {@link Function} parses the metadata file, might return null.
+	 * @return MetadataBean
+	 */
+	public MetadataBean get(final IdpConfig idpConfig, final Function<IdpConfig, MetadataBean> loader) {
+		final File metadataFile = idpConfig.getIdPMetadataFile();
+
+		if (null == idpConfig.getId() || null == metadataFile) {
+			return loader.apply(idpConfig);
+		}
+
+		final FileFingerprint stat = FileFingerprint.stat(metadataFile);
+		final Entry entry = this.entries.get(idpConfig.getId());
+
+		if (null != entry && entry.fingerprint.sameStat(stat)) {
+			return entry.metadataBean;
+		}
+
+		final Entry newEntry = this.entries.compute(idpConfig.getId(), (id, current) -> {
+			if (null != current && current.fingerprint.sameStat(stat)) {
+				// another thread already refreshed it.
+				return current;
+			}
+
+			final FileFingerprint fingerprint = stat.withContentHash();
+
+			if (null != current && current.fingerprint.sameContent(fingerprint)) {
+				// the file was touched but the content is the same.
+				return new Entry(fingerprint, current.metadataBean);
+			}
+
+			Logger.debug(MetadataBeanCache.class, "Parsing metadata for IdP: " + id + ", " + fingerprint);
+
+			final MetadataBean metadataBean = loader.apply(idpConfig);
+
+			return (null != metadataBean) ? new Entry(fingerprint, metadataBean) : null;
+		});
+
+		return (null != newEntry) ? newEntry.metadataBean : null;
+	}
+
+	/**
+	 * Removes the metadata of the IdP, it will be parsed again on the next
+	 * access.
+	 *
+	 * @param idpConfigId
+	 *            {@link String}
+	 */
+	public void invalidate(final String idpConfigId) {
+		if (null != idpConfigId) {
+			this.entries.remove(idpConfigId);
+		}
+	}
+
+	/**
+	 * Removes all the metadata.
+	 */
+	public void clear() {
+		this.entries.clear();
+	}
+
+	private static final class Entry {
+		private final FileFingerprint fingerprint;
+		private final MetadataBean metadataBean;
+
+		private Entry(final FileFingerprint fingerprint, final MetadataBean metadataBean) {
+			this.fingerprint = fingerprint;
+			this.metadataBean = metadataBean;
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.dotcms.plugin.saml.v3.exception.DotSamlException;
 import com.dotmarketing.util.Config;
@@ -24,6 +25,7 @@ public class DotsamlDefaultPropertiesService {
 			FileUtil.getRealPath(Config.getStringProperty("ASSET_PATH", "/assets")));;
 	private static final String idpFilePath = assetsPath + PROPERTIES_PATH;
 	private static final DotsamlProperties defaultParams = new DotsamlProperties();
+	private static final AtomicInteger defaultsVersion = new AtomicInteger();
 
 	public static void init() {
 		updateDefaultParameters(loadOptionalDefaults());
@@ -58,6 +60,16 @@ public class DotsamlDefaultPropertiesService {
 		return props;
 	}
 
+	/**
+	 * Incremented on each default parameter update, so the
+	 * {@link IdpConfigProfile} built with older defaults can be rebuilt.
+	 * 
+	 * @return int
+	 */
+	public static int getDefaultsVersion() {
+		return defaultsVersion.get();
+	}
+
 	public static DotsamlProperties getDefaultParams() {
 		return defaultParams;
 	}
@@ -220,6 +232,8 @@ public class DotsamlDefaultPropertiesService {
 					NOT_FOUND_ERROR + property.getPropertyName() + ":" + value);
 			break;
 		}
+
+		defaultsVersion.incrementAndGet();
 	}
 
 	public static String getDefaultStringParameter(DotsamlPropertyName property) throws DotSamlException {
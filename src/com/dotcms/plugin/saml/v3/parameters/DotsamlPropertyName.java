@@ -149,7 +149,7 @@ public enum DotsamlPropertyName {
 	
 	/**
 	 * By default we use the implementation
-	 * {@link handler.HttpPostAssertionResolverHandlerImpl} which is in charge
+	 * {@link handler.StreamingHttpPostAssertionResolverHandlerImpl} which is in charge
 	 * of resolve the assertion using the SOAP artifact resolver based on the
 	 * artifact id pass by the request. If you want a different implementation
 	 * please override with the class here.
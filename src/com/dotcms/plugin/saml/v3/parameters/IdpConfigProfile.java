@@ -0,0 +1,250 @@
+package com.dotcms.plugin.saml.v3.parameters;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.dotcms.plugin.saml.v3.config.EndpointHelper;
+import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.config.IdpPathMatcher;
+import com.dotcms.plugin.saml.v3.config.RoleMatcher;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Immutable snapshot of the optional properties of an {@link IdpConfig},
+ * merged with the defaults of {@link DotsamlDefaultPropertiesService} and
+ * already parsed to booleans, integers and arrays, with the paths, the role
+ * patterns and the names of the user attributes compiled and indexed.
+ * <p>
+ * It is built once per {@link IdpConfig} (see {@link IdpConfig#getProfile()})
+ * and rebuilt when the optional properties are replaced or the defaults
+ * change, so {@link DotsamlPropertiesService} lookups do not touch the
+ * synchronized {@link Properties} nor parse values on each call.
+ * <p>
+ * A value that could not be resolved when the profile was built (wrong type
+ * or unparseable) is not in the maps; the getters log the same warning the
+ * property lookup used to log and return null.
+ */
+public final class IdpConfigProfile {
+
+	private final String idpConfigId;
+	private final int defaultsVersion;
+	private final Map<DotsamlPropertyName, String> overrides;
+	private final Set<DotsamlPropertyName> invalidOverrides;
+	private final Map<DotsamlPropertyName, String> strings;
+	private final Map<DotsamlPropertyName, Boolean> booleans;
+	private final Map<DotsamlPropertyName, Integer> integers;
+	private final Map<DotsamlPropertyName, String[]> arrays;
+	private final IdpPathMatcher pathMatcher;
+	private final RoleMatcher roleMatcher;
+	private final Map<String, UserAttribute> userAttributes;
+
+	private IdpConfigProfile(final IdpConfig idpConfig, final int defaultsVersion) {
+		final Map<DotsamlPropertyName, String> overrides = new EnumMap<>(DotsamlPropertyName.class);
+		final Set<DotsamlPropertyName> invalidOverrides = EnumSet.noneOf(DotsamlPropertyName.class);
+		final Map<DotsamlPropertyName, String> strings = new EnumMap<>(DotsamlPropertyName.class);
+		final Map<DotsamlPropertyName, Boolean> booleans = new EnumMap<>(DotsamlPropertyName.class);
+		final Map<DotsamlPropertyName, Integer> integers = new EnumMap<>(DotsamlPropertyName.class);
+		final Map<DotsamlPropertyName, String[]> arrays = new EnumMap<>(DotsamlPropertyName.class);
+		final Properties properties = idpConfig.getOptionalProperties();
+
+		this.idpConfigId = idpConfig.getId();
+		this.defaultsVersion = defaultsVersion;
+
+		for (final DotsamlPropertyName propertyName : DotsamlPropertyName.values()) {
+			final boolean overridden = null != properties && properties.containsKey(propertyName.getPropertyName());
+			String value = null;
+
+			try {
+				if (overridden) {
+					value = (String) properties.get(propertyName.getPropertyName());
+					overrides.put(propertyName, value);
+				}
+			} catch (Exception e) {
+				// not a String, every lookup of this property fails.
+				invalidOverrides.add(propertyName);
+				continue;
+			}
+
+			try {
+				strings.put(propertyName,
+						overridden ? value : DotsamlDefaultPropertiesService.getDefaultStringParameter(propertyName));
+			} catch (Exception e) {
+				// not a String property.
+			}
+
+			try {
+				booleans.put(propertyName, overridden ? Boolean.valueOf(Boolean.parseBoolean(value))
+						: Boolean.valueOf(DotsamlDefaultPropertiesService.getDefaultBooleanParameter(propertyName)));
+			} catch (Exception e) {
+				// not a boolean property.
+			}
+
+			try {
+				integers.put(propertyName, overridden ? Integer.valueOf(Integer.parseInt(value))
+						: DotsamlDefaultPropertiesService.getDefaultIntegerParameter(propertyName));
+			} catch (Exception e) {
+				// not an integer property.
+			}
+
+			try {
+				final String arrayValue = overridden ? value
+						: DotsamlDefaultPropertiesService.getDefaultStringParameter(propertyName);
+				arrays.put(propertyName,
+						(null != arrayValue) ? StringUtils.split(arrayValue, DotSamlConstants.ARRAY_SEPARATOR_CHAR) : null);
+			} catch (Exception e) {
+				// not a String property.
+			}
+		}
+
+		this.overrides = Collections.unmodifiableMap(overrides);
+		this.invalidOverrides = Collections.unmodifiableSet(invalidOverrides);
+		this.strings = Collections.unmodifiableMap(strings);
+		this.booleans = Collections.unmodifiableMap(booleans);
+		this.integers = Collections.unmodifiableMap(integers);
+		this.arrays = Collections.unmodifiableMap(arrays);
+		this.pathMatcher = IdpPathMatcher.compile(this.split(DotsamlPropertyName.DOT_SAML_ACCESS_FILTER_VALUES),
+				this.split(DotsamlPropertyName.DOT_SAML_INCLUDE_PATH_VALUES),
+				this.split(DotsamlPropertyName.DOT_SAML_LOGOUT_PATH_VALUES));
+		this.roleMatcher = RoleMatcher.compile(this.arrays.get(DotsamlPropertyName.DOTCMS_SAML_INCLUDE_ROLES_PATTERN),
+				this.strings.get(DotsamlPropertyName.DOT_SAML_REMOVE_ROLES_PREFIX));
+		this.userAttributes = this.indexUserAttributes();
+
+		Logger.debug(IdpConfigProfile.class, "Built the profile for idpConfigId: " + this.idpConfigId
+				+ ", overrides: " + this.overrides.keySet());
+	}
+
+	/**
+	 * Builds the profile of the idpConfig with the current defaults.
+	 * 
+	 * @param idpConfig
+	 *            IdpConfig
+	 * @return IdpConfigProfile
+	 */
+	public static IdpConfigProfile of(final IdpConfig idpConfig) {
+		return new IdpConfigProfile(idpConfig, DotsamlDefaultPropertiesService.getDefaultsVersion());
+	}
+
+	/**
+	 * False if the defaults changed after the profile was built.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isCurrent() {
+		return this.defaultsVersion == DotsamlDefaultPropertiesService.getDefaultsVersion();
+	}
+
+	public Boolean getBoolean(final DotsamlPropertyName propertyName) {
+		return this.get(this.booleans, propertyName);
+	}
+
+	public String getString(final DotsamlPropertyName propertyName) {
+		return this.get(this.strings, propertyName);
+	}
+
+	/**
+	 * Returns the value set on the idpConfig, or the given default value if it
+	 * is not set. The system defaults are not used.
+	 * 
+	 * @param propertyName
+	 *            DotsamlPropertyName
+	 * @param defaultValue
+	 *            String
+	 * @return String
+	 */
+	public String getString(final DotsamlPropertyName propertyName, final String defaultValue) {
+		if (this.overrides.containsKey(propertyName)) {
+			return this.overrides.get(propertyName);
+		}
+
+		return this.invalidOverrides.contains(propertyName) ? this.warn(propertyName) : defaultValue;
+	}
+
+	public Integer getInteger(final DotsamlPropertyName propertyName) {
+		return this.get(this.integers, propertyName);
+	}
+
+	/**
+	 * Returns a copy of the comma separated value, so callers can not change
+	 * the profile.
+	 * 
+	 * @param propertyName
+	 *            DotsamlPropertyName
+	 * @return String array
+	 */
+	public String[] getStringArray(final DotsamlPropertyName propertyName) {
+		final String[] array = this.get(this.arrays, propertyName);
+
+		return (null != array) ? array.clone() : null;
+	}
+
+	/**
+	 * Returns the access filter, include and logout paths compiled.
+	 * 
+	 * @return IdpPathMatcher
+	 */
+	public IdpPathMatcher getPathMatcher() {
+		return this.pathMatcher;
+	}
+
+	/**
+	 * Returns the include role patterns and the remove role prefix compiled.
+	 * 
+	 * @return RoleMatcher
+	 */
+	public RoleMatcher getRoleMatcher() {
+		return this.roleMatcher;
+	}
+
+	/**
+	 * Returns the user property read from the attribute with the given name or
+	 * friendly name, null if there is none.
+	 * 
+	 * @param attributeName
+	 *            String
+	 * @return UserAttribute
+	 */
+	public UserAttribute getUserAttribute(final String attributeName) {
+		return (null != attributeName) ? this.userAttributes.get(attributeName) : null;
+	}
+
+	private Map<String, UserAttribute> indexUserAttributes() {
+		final Map<String, UserAttribute> userAttributes = new HashMap<>();
+
+		for (final UserAttribute userAttribute : UserAttribute.values()) {
+			final String attributeName = this.strings.get(userAttribute.getPropertyName());
+
+			if (null != attributeName) {
+				userAttributes.putIfAbsent(attributeName, userAttribute);
+			}
+		}
+
+		return Collections.unmodifiableMap(userAttributes);
+	}
+
+	private String[] split(final DotsamlPropertyName propertyName) {
+		return EndpointHelper.splitPaths(this.strings.get(propertyName));
+	}
+
+	private <T> T get(final Map<DotsamlPropertyName, T> values, final DotsamlPropertyName propertyName) {
+		if (values.containsKey(propertyName)) {
+			return values.get(propertyName);
+		}
+
+		return this.warn(propertyName);
+	}
+
+	private <T> T warn(final DotsamlPropertyName propertyName) {
+		Logger.warn(DotsamlPropertiesService.class, "Cast exception on " + propertyName.getPropertyName()
+				+ " property. idpConfigId: " + this.idpConfigId);
+
+		return null;
+	}
+}
@@ -0,0 +1,24 @@
+package com.dotcms.plugin.saml.v3.parameters;
+
+/**
+ * The user properties read from the SAML attributes, each one with the
+ * property that names its attribute. When an attribute matches several of
+ * them, the first one in this order is used.
+ */
+public enum UserAttribute {
+
+	EMAIL(DotsamlPropertyName.DOT_SAML_EMAIL_ATTRIBUTE),
+	LAST_NAME(DotsamlPropertyName.DOT_SAML_LASTNAME_ATTRIBUTE),
+	FIRST_NAME(DotsamlPropertyName.DOT_SAML_FIRSTNAME_ATTRIBUTE),
+	ROLES(DotsamlPropertyName.DOT_SAML_ROLES_ATTRIBUTE);
+
+	private final DotsamlPropertyName propertyName;
+
+	UserAttribute(final DotsamlPropertyName propertyName) {
+		this.propertyName = propertyName;
+	}
+
+	public DotsamlPropertyName getPropertyName() {
+		return this.propertyName;
+	}
+}
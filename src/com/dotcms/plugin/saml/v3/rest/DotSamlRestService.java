@@ -5,6 +5,7 @@ import static com.dotcms.plugin.saml.v3.key.DotSamlConstants.SAML_USER_ID;
 import static com.dotcms.plugin.saml.v3.util.SamlUtils.SAML_NAME_ID;
 import static com.dotcms.plugin.saml.v3.util.SamlUtils.SAML_SESSION_INDEX;
 import static com.dotcms.plugin.saml.v3.util.SamlUtils.getSessionIndex;
+import static com.dotcms.plugin.saml.v3.util.SamlUtils.isRelayStatePath;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -41,6 +42,8 @@ import com.liferay.portal.model.User;
 @Path("/dotsaml")
 public class DotSamlRestService implements Serializable {
 	private static final long serialVersionUID = 6901877501532737335L;
+	// This is the key to get the relay state from the request.
+	private static final String RELAY_STATE_KEY = "RelayState";
 	private final IdpConfigHelper idpConfigHelper;
 	public static final List<String> dotsamlPathSegments = new ArrayList<String>() {
 		{
@@ -119,6 +122,10 @@ public class DotSamlRestService implements Serializable {
 
 			String loginPath = (String) session.getAttribute(WebKeys.REDIRECT_AFTER_LOGIN);
 			if (null == loginPath) {
+				// Without a session before the login, the original request
+				// comes back from the IdP as the RelayState.
+				final String relayState = httpServletRequest.getParameter(RELAY_STATE_KEY);
+
 				// At this stage we cannot determine whether this was a front
 				// end or back end request since we cannot determine
 				// original request.
@@ -126,7 +133,7 @@ public class DotSamlRestService implements Serializable {
 				// REDIRECT_AFTER_LOGIN should have already been set in relay
 				// request to IdP. 'autoLogin' will check the ORIGINAL_REQUEST
 				// session attribute.
-				loginPath = DEFAULT_LOGIN_PATH;
+				loginPath = isRelayStatePath(relayState) ? relayState : DEFAULT_LOGIN_PATH;
 			} else {
 				session.removeAttribute(WebKeys.REDIRECT_AFTER_LOGIN);
 			}
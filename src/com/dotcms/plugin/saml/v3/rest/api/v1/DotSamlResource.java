@@ -4,6 +4,7 @@ import com.dotcms.plugin.saml.v3.config.IdpConfig;
 import com.dotcms.plugin.saml.v3.config.IdpConfigHelper;
 import com.dotcms.plugin.saml.v3.config.IdpConfigWriterReader;
 import com.dotcms.plugin.saml.v3.exception.DotSamlException;
+import com.dotcms.plugin.saml.v3.exception.IdpConfigVersionConflictException;
 import com.dotcms.plugin.saml.v3.filter.SamlFilter;
 import com.dotcms.plugin.saml.v3.util.pagination.IdpConfigPaginator;
 
@@ -77,19 +78,30 @@ public class DotSamlResource implements Serializable
 	@Consumes( MediaType.MULTIPART_FORM_DATA )
 	@Produces( { MediaType.APPLICATION_JSON, "application/javascript" } )
 	// Saves an idp config.
-	public final Response createIdpConfig( @Context final HttpServletRequest request, @FormDataParam( "id" ) String id, @FormDataParam( "idpName" ) String idpName, @FormDataParam( "enabled" ) boolean enabled, @FormDataParam( "sPIssuerURL" ) String sPIssuerURL, @FormDataParam( "sPEndpointHostname" ) String sPEndpointHostname, @FormDataParam( "privateKey" ) InputStream privateKeyStream, @FormDataParam( "privateKey" ) FormDataContentDisposition privateKeyFileDetail, @FormDataParam( "publicCert" ) InputStream publicCertStream, @FormDataParam( "publicCert" ) FormDataContentDisposition publicCertFileDetail, @FormDataParam( "idPMetadataFile" ) InputStream idPMetadataFileStream, @FormDataParam( "idPMetadataFile" ) FormDataContentDisposition idPMetadataFileDetail, @FormDataParam( "signatureValidationType" ) String signatureValidationType, @FormDataParam( "optionalProperties" ) String optionalProperties, @FormDataParam( "sites" ) String sites )
+	public final Response createIdpConfig( @Context final HttpServletRequest request, @FormDataParam( "id" ) String id, @FormDataParam( "idpName" ) String idpName, @FormDataParam( "enabled" ) boolean enabled, @FormDataParam( "sPIssuerURL" ) String sPIssuerURL, @FormDataParam( "sPEndpointHostname" ) String sPEndpointHostname, @FormDataParam( "privateKey" ) InputStream privateKeyStream, @FormDataParam( "privateKey" ) FormDataContentDisposition privateKeyFileDetail, @FormDataParam( "publicCert" ) InputStream publicCertStream, @FormDataParam( "publicCert" ) FormDataContentDisposition publicCertFileDetail, @FormDataParam( "idPMetadataFile" ) InputStream idPMetadataFileStream, @FormDataParam( "idPMetadataFile" ) FormDataContentDisposition idPMetadataFileDetail, @FormDataParam( "signatureValidationType" ) String signatureValidationType, @FormDataParam( "optionalProperties" ) String optionalProperties, @FormDataParam( "sites" ) String sites, @FormDataParam( "version" ) String version )
 	{
 		this.webResource.init( null, true, request, true, null );
 
+		// An update has to say which version it was made from, otherwise it can not be told from a lost update.
+		if ( UtilMethods.isSet( id ) && !this.isVersion( version ) )
+		{
+			final String message = "The version of the IdP config: " + id + " is required to update it and must be a number, got: " + version;
+			Logger.warn( this, message );
+			return ExceptionMapperUtil.createResponse( new DotSamlException( message ), Response.Status.BAD_REQUEST );
+		}
+
 		Response response;
 
 		try
 		{
 			IdpConfig idpConfig;
+			long expectedVersion = 0;
 
 			if ( UtilMethods.isSet( id ) )
 			{
-				idpConfig = idpConfigHelper.findIdpConfig( id );
+				// Edits a copy, the cached config is only replaced if the save is accepted.
+				idpConfig = new IdpConfig( idpConfigHelper.findIdpConfig( id ) );
+				expectedVersion = Long.parseLong( version.trim() );
 			}
 			else
 			{
@@ -134,10 +146,15 @@ public class DotSamlResource implements Serializable
 			HashMap<String, String> sitesMap = new ObjectMapper().readValue( sites, HashMap.class );
 			idpConfig.setSites( sitesMap );
 
-			idpConfig = idpConfigHelper.saveIdpConfig( idpConfig );
+			idpConfig = idpConfigHelper.saveIdpConfig( idpConfig, expectedVersion );
 
 			response = Response.ok( new ResponseEntityView( idpConfig ) ).build();
 		}
+		catch ( IdpConfigVersionConflictException conflictException )
+		{
+			Logger.warn( this, conflictException.getMessage() );
+			response = ExceptionMapperUtil.createResponse( conflictException, Response.Status.CONFLICT );
+		}
 		catch ( IOException ioException )
 		{
 			Logger.error( this, "Idp is not valid (" + ioException.getMessage() + ")", ioException );
@@ -158,6 +175,18 @@ public class DotSamlResource implements Serializable
 		return response;
 	}
 
+	private boolean isVersion( final String version )
+	{
+		try
+		{
+			return UtilMethods.isSet( version ) && Long.parseLong( version.trim() ) >= 0;
+		}
+		catch ( NumberFormatException exception )
+		{
+			return false;
+		}
+	}
+
 	@DELETE
 	@Path( "/idp/{id}" )
 	@JSONP
@@ -10,14 +10,16 @@ import static com.dotcms.plugin.saml.v3.util.SamlUtils.buildLogoutRequest;
 import static com.dotcms.plugin.saml.v3.util.SamlUtils.getCredential;
 import static com.dotcms.plugin.saml.v3.util.SamlUtils.getIdentityProviderDestinationEndpoint;
 import static com.dotcms.plugin.saml.v3.util.SamlUtils.getIdentityProviderSLODestinationEndpoint;
-import static com.dotcms.plugin.saml.v3.util.SamlUtils.toXMLObjectString;
 import static com.dotmarketing.util.UtilMethods.isSet;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -26,6 +28,7 @@ import javax.servlet.http.HttpSession;
 import org.opensaml.core.xml.XMLObject;
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.encoder.MessageEncodingException;
+import org.opensaml.saml.common.binding.SAMLBindingSupport;
 import org.opensaml.saml.common.messaging.context.SAMLEndpointContext;
 import org.opensaml.saml.common.messaging.context.SAMLPeerEntityContext;
 import org.opensaml.saml.saml2.binding.encoding.impl.HTTPRedirectDeflateEncoder;
@@ -38,9 +41,11 @@ import org.opensaml.saml.saml2.core.NameID;
 import org.opensaml.xmlsec.SignatureSigningParameters;
 import org.opensaml.xmlsec.context.SecurityParametersContext;
 import org.opensaml.xmlsec.signature.support.SignatureConstants;
+import org.w3c.dom.Element;
 
 import com.dotcms.plugin.saml.v3.beans.AttributesBean;
 import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.config.RoleMatcher;
 import com.dotcms.plugin.saml.v3.config.SamlSiteValidator;
 import com.dotcms.plugin.saml.v3.exception.AttributesNotFoundException;
 import com.dotcms.plugin.saml.v3.exception.DotSamlException;
@@ -49,8 +54,16 @@ import com.dotcms.plugin.saml.v3.exception.SamlUnauthorizedException;
 import com.dotcms.plugin.saml.v3.handler.AssertionResolverHandler;
 import com.dotcms.plugin.saml.v3.handler.AssertionResolverHandlerFactory;
 import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+import com.dotcms.plugin.saml.v3.parameters.DotsamlDefaultPropertiesService;
 import com.dotcms.plugin.saml.v3.parameters.DotsamlPropertiesService;
 import com.dotcms.plugin.saml.v3.parameters.DotsamlPropertyName;
+import com.dotcms.plugin.saml.v3.parameters.IdpConfigProfile;
+import com.dotcms.plugin.saml.v3.parameters.UserAttribute;
+import com.dotcms.plugin.saml.v3.util.ExpiringIdSet;
+import com.dotcms.plugin.saml.v3.util.OutstandingRequestStore;
+import com.dotcms.plugin.saml.v3.util.ProvisioningFingerprintCache;
+import com.dotcms.plugin.saml.v3.util.RoleKeyCache;
+import com.dotcms.plugin.saml.v3.util.SamlLogger;
 import com.dotcms.plugin.saml.v3.util.SiteIdpConfigResolver;
 import com.dotcms.repackage.com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang.StringUtils;
@@ -62,12 +75,12 @@ import com.dotmarketing.business.Role;
 import com.dotmarketing.business.RoleAPI;
 import com.dotmarketing.business.UserAPI;
 import com.dotmarketing.cms.factories.PublicEncryptionFactory;
+import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.util.ActivityLogger;
 import com.dotmarketing.util.AdminLogger;
 import com.dotmarketing.util.DateUtil;
 import com.dotmarketing.util.Logger;
-import com.dotmarketing.util.RegEX;
 import com.dotmarketing.util.UUIDGenerator;
 import com.dotmarketing.util.UtilMethods;
 import com.dotmarketing.util.json.JSONException;
@@ -105,9 +118,13 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 		this.assertionResolverHandlerFactory = assertionResolverHandlerFactory;
 	}
 
-	private void addRole(final User user, final String roleKey, final boolean createRole, final boolean isSystem)
+	/**
+	 * Loads the role, creating it if it does not exist and createRole is set.
+	 * Returns null if there is no such role.
+	 */
+	private Role resolveRole(final String roleKey, final boolean createRole, final boolean isSystem)
 			throws DotDataException {
-		Role role = this.roleAPI.loadRoleByKey(roleKey);
+		Role role = RoleKeyCache.getInstance().get(roleKey, this.roleAPI::loadRoleByKey);
 
 		// create the role, in case it does not exist
 		if (role == null && createRole) {
@@ -115,27 +132,17 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 			role = createNewRole(roleKey, isSystem);
 		}
 
-		if (null != role) {
-			if (!this.roleAPI.doesUserHaveRole(user, role)) {
-				this.roleAPI.addRoleToUser(role, user);
-				Logger.debug(this, "Role named '" + role.getName() + "' has been added to user: " + user.getEmailAddress());
-			} else {
-				Logger.debug(this,
-						"User '" + user.getEmailAddress() + "' already has the role '" + role + "'. Skipping assignment...");
-			}
-		} else {
+		if (null == role) {
 			Logger.debug(this, "Role named '" + roleKey + "' does NOT exists in dotCMS. Ignoring it...");
 		}
-	}
 
-	private void addRole(final User user, final String removeRolePrefix, final XMLObject roleObject)
-			throws DotDataException {
-		// remove role prefix
-		final String roleKey = (isSet(removeRolePrefix))
-				? roleObject.getDOM().getFirstChild().getNodeValue().replaceFirst(removeRolePrefix, StringUtils.EMPTY)
-				: roleObject.getDOM().getFirstChild().getNodeValue();
+		return role;
+	}
 
-		addRole(user, roleKey, false, false);
+	private void addRole(final Map<String, Role> roles, final Role role) {
+		if (null != role) {
+			roles.put(role.getId(), role);
+		}
 	}
 
 	private void addRoles(final User user, final AttributesBean attributesBean, final IdpConfig idpConfig) {
@@ -144,18 +151,27 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 		Logger.debug(this, "Using the build roles Strategy: " + buildRolesStrategy);
 
 		if (!DOTCMS_SAML_BUILD_ROLES_NONE_VALUE.equalsIgnoreCase(buildRolesStrategy)) {
+			boolean localTransaction = false;
+
 			try {
+				localTransaction = HibernateUtil.startLocalTransactionIfNeeded();
+
+				final Map<String, Role> roles = this.handleRoles(attributesBean, idpConfig, buildRolesStrategy);
+
 				// remove previous roles
 				if (!DOTCMS_SAML_BUILD_ROLES_STATIC_ADD_VALUE.equalsIgnoreCase(buildRolesStrategy)) {
-					Logger.debug(this, "Removing ALL existing roles from user '" + user.getUserId() + "'...");
-					this.roleAPI.removeAllRolesFromUser(user);
+					this.syncRoles(user, roles, true);
 				} else {
 					Logger.debug(this,
 							"The buildRoles strategy is: 'staticadd'. It won't remove any existing dotCMS role");
+					this.syncRoles(user, roles, false);
 				}
 
-				this.handleRoles(user, attributesBean, idpConfig, buildRolesStrategy);
-			} catch (DotDataException e) {
+				if (localTransaction) {
+					HibernateUtil.commitTransaction();
+				}
+			} catch (DotDataException | RuntimeException e) {
+				this.rollback(localTransaction);
 				Logger.error(this, "Error adding roles to user '" + user.getUserId() + "': " + e.getMessage(), e);
 				throw new DotSamlException(e.getMessage());
 			}
@@ -164,9 +180,54 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 		}
 	}
 
-	private void addRolesFromIDP(final User user, final AttributesBean attributesBean, final IdpConfig idpConfig,
-			final String buildRolesStrategy) throws DotDataException {
-		String role = null;
+	private void rollback(final boolean localTransaction) {
+		if (localTransaction) {
+			try {
+				HibernateUtil.rollbackTransaction();
+			} catch (DotDataException e) {
+				Logger.error(this, "Could not rollback the user roles: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Makes the roles the user has been given explicitly match the roles of
+	 * the login: reads the current roles once, and only adds the missing ones
+	 * and (if removeOthers) removes the ones that are not in the login. The
+	 * user's own role is never removed.
+	 */
+	private void syncRoles(final User user, final Map<String, Role> roles, final boolean removeOthers)
+			throws DotDataException {
+		final Map<String, Role> currentRoles = new HashMap<>();
+		int added = 0;
+		int removed = 0;
+
+		this.roleAPI.loadRolesForUser(user.getUserId(), false).forEach(role -> currentRoles.put(role.getId(), role));
+
+		for (final Role role : roles.values()) {
+			if (!currentRoles.containsKey(role.getId())) {
+				this.roleAPI.addRoleToUser(role, user);
+				added++;
+				Logger.debug(this, "Role named '" + role.getName() + "' has been added to user: " + user.getEmailAddress());
+			}
+		}
+
+		if (removeOthers) {
+			for (final Role role : currentRoles.values()) {
+				if (!roles.containsKey(role.getId()) && !user.getUserId().equals(role.getRoleKey())) {
+					this.roleAPI.removeRoleFromUser(role, user);
+					removed++;
+					Logger.debug(this, "Role named '" + role.getName() + "' has been removed from user: " + user.getEmailAddress());
+				}
+			}
+		}
+
+		Logger.debug(this, "Roles of user '" + user.getUserId() + "': " + added + " added, " + removed + " removed, "
+				+ (roles.size() - added) + " unchanged");
+	}
+
+	private void addRolesFromIDP(final Map<String, Role> roles, final AttributesBean attributesBean,
+			final IdpConfig idpConfig, final String buildRolesStrategy) throws DotDataException {
 		final boolean includeIDPRoles = DOTCMS_SAML_BUILD_ROLES_ALL_VALUE.equalsIgnoreCase(buildRolesStrategy)
 				|| DOTCMS_SAML_BUILD_ROLES_IDP_VALUE.equalsIgnoreCase(buildRolesStrategy);
 
@@ -177,34 +238,23 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 				&& null != attributesBean.getRoles().getAttributeValues()
 				&& attributesBean.getRoles().getAttributeValues().size() > 0) {
 
-			final String removeRolePrefix = DotsamlPropertiesService.getOptionString(idpConfig,
-					DotsamlPropertyName.DOT_SAML_REMOVE_ROLES_PREFIX);
-			
-			final String[] rolePatterns = DotsamlPropertiesService.getOptionStringArray(idpConfig,
-					DotsamlPropertyName.DOTCMS_SAML_INCLUDE_ROLES_PATTERN);
+			// compiled once per profile
+			final RoleMatcher roleMatcher = idpConfig.getProfile().getRoleMatcher();
 
-			Logger.debug(this,
-					"Role Patterns: " + this.toString(rolePatterns) + ", remove role prefix: " + removeRolePrefix);
+			Logger.debug(this, "Role matcher: " + roleMatcher);
 
 			// add roles
 			for (XMLObject roleObject : attributesBean.getRoles().getAttributeValues()) {
-				if (null != rolePatterns && rolePatterns.length > 0) {
-					role = roleObject.getDOM().getFirstChild().getNodeValue();
-
-					if (!this.isValidRole(role, rolePatterns)) {
-						// when there are role filters and the current roles is
-						// not
-						// a valid role, we have to filter it.
-
-						Logger.debug(this, "Skipping role: " + role);
-						continue;
-					} else {
-						Logger.debug(this, "Role Patterns: " + this.toString(rolePatterns) + ", remove role prefix: "
-								+ removeRolePrefix + ": true");
-					}
+				final String role = roleObject.getDOM().getFirstChild().getNodeValue();
+
+				if (!roleMatcher.isIncluded(role)) {
+					// when there are role filters and the current roles is not
+					// a valid role, we have to filter it.
+					Logger.debug(this, "Skipping role: " + role);
+					continue;
 				}
 
-				this.addRole(user, removeRolePrefix, roleObject);
+				this.addRole(roles, this.resolveRole(roleMatcher.removePrefix(role), false, false));
 			}
 		} else {
 			Logger.info(this, "Roles have been ignore by the build roles strategy: " + buildRolesStrategy
@@ -235,6 +285,11 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 	public void authentication(final HttpServletRequest request, final HttpServletResponse response)
 			throws DotDataException, IOException, JSONException {
 		final IdpConfig idpConfig = SiteIdpConfigResolver.getInstance().resolveIdpConfig(request);
+
+		if (null == idpConfig) {
+			throw new DotDataException("Idp for site: " + request.getServerName() + " not found.");
+		}
+
 		final MessageContext context = new MessageContext(); // main context
 		final AuthnRequest authnRequest = buildAuthnRequest(request, idpConfig);
 
@@ -248,6 +303,8 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 		endpointContext.setEndpoint(getIdentityProviderDestinationEndpoint(idpConfig));
 
 		this.setSignatureSigningParams(context, idpConfig);
+		this.setRelayState(context, request);
+		this.registerRequest(idpConfig, authnRequest);
 		this.doRedirect(context, response, authnRequest, idpConfig);
 	}
 
@@ -280,9 +337,30 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 		endpointContext.setEndpoint(getIdentityProviderDestinationEndpoint(idpConfig));
 
 		this.setSignatureSigningParams(context, idpConfig);
+		this.setRelayState(context, request);
+		this.registerRequest(idpConfig, authnRequest);
 		this.doRedirect(context, response, authnRequest, idpConfig);
 	}
 
+	// the id is only needed to check the InResponseTo of the response.
+	private void registerRequest(final IdpConfig idpConfig, final AuthnRequest authnRequest) {
+		if (OutstandingRequestStore.getInstance().isEnabled()) {
+			OutstandingRequestStore.getInstance().register(idpConfig, authnRequest.getID());
+		}
+	}
+
+	/**
+	 * Sends the path to go after the login as the RelayState, when the filter
+	 * could not keep it in the session.
+	 */
+	private void setRelayState(final MessageContext context, final HttpServletRequest request) {
+		final Object relayState = request.getAttribute(DotSamlConstants.DOT_SAML_RELAY_STATE_ATTRIBUTE);
+
+		if (relayState instanceof String) {
+			SAMLBindingSupport.setRelayState(context, (String) relayState);
+		}
+	}
+
 	private String checkDefaultValue(final String lastNameForNullValue, final String logMessage,
 			final String exceptionMessage) {
 		if (!UtilMethods.isSet(lastNameForNullValue)) {
@@ -355,6 +433,9 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 			AdminLogger.log(AdminLogger.class, getClass() + " - Error adding Role",
 					"Date: " + date + ";  " + "Role:" + roleKey);
 			throw e;
+		} finally {
+			// drops the cached "no such role" entry of the key.
+			RoleKeyCache.getInstance().invalidate(roleKey);
 		}
 
 		return role;
@@ -448,8 +529,7 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 
 			encoder.initialize();
 
-			Logger.debug(this, "Printing XMLObject:");
-			Logger.debug(this, "\n\n" + toXMLObjectString(xmlObject));
+			SamlLogger.debugXml(this, "Printing XMLObject:", xmlObject);
 			Logger.debug(this, "Redirecting to IdP '" + idpConfig.getIdpName() + "'");
 
 			response.setHeader("Access-Control-Allow-Origin", "*");
@@ -532,12 +612,17 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 		return user;
 	}
 
-	private void handleRoles(final User user, final AttributesBean attributesBean, final IdpConfig idpConfig,
+	/**
+	 * Returns the roles, by id, the user gets with the build roles strategy.
+	 */
+	private Map<String, Role> handleRoles(final AttributesBean attributesBean, final IdpConfig idpConfig,
 			final String buildRolesStrategy) throws DotDataException {
-		this.addRolesFromIDP(user, attributesBean, idpConfig, buildRolesStrategy);
+		final Map<String, Role> roles = new LinkedHashMap<>();
+
+		this.addRolesFromIDP(roles, attributesBean, idpConfig, buildRolesStrategy);
 
 		// Add SAML User role
-		addRole(user, DotSamlConstants.DOTCMS_SAML_USER_ROLE, true, true);
+		addRole(roles, resolveRole(DotSamlConstants.DOTCMS_SAML_USER_ROLE, true, true));
 		Logger.debug(this, "Default SAML User role has been assigned");
 
 		// the only strategy that does not include the saml user role is the
@@ -546,8 +631,8 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 			// Add DOTCMS_SAML_OPTIONAL_USER_ROLE
 			if (DotsamlPropertiesService.getOptionString(idpConfig,
 					DotsamlPropertyName.DOTCMS_SAML_OPTIONAL_USER_ROLE) != null) {
-				addRole(user, DotsamlPropertiesService.getOptionString(idpConfig,
-						DotsamlPropertyName.DOTCMS_SAML_OPTIONAL_USER_ROLE), false, false);
+				addRole(roles, resolveRole(DotsamlPropertiesService.getOptionString(idpConfig,
+						DotsamlPropertyName.DOTCMS_SAML_OPTIONAL_USER_ROLE), false, false));
 				Logger.debug(this, "Optional user role: " + DotsamlPropertiesService.getOptionString(idpConfig,
 						DotsamlPropertyName.DOTCMS_SAML_OPTIONAL_USER_ROLE) + " has been assigned");
 			}
@@ -555,22 +640,7 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 			Logger.info(this, "The build roles strategy is 'idp'. No saml_user_role has been added");
 		}
 
-	}
-
-	private boolean isValidRole(final String role, final String[] rolePatterns) {
-		boolean isValidRole = false;
-
-		if (null != rolePatterns) {
-			for (String rolePattern : rolePatterns) {
-				Logger.debug(this, "Valid Role: " + role + ", pattern: " + rolePattern);
-				isValidRole |= this.match(role, rolePattern);
-			}
-		} else {
-			// if not pattern, role is valid.
-			isValidRole = true;
-		}
-
-		return isValidRole;
+		return roles;
 	}
 
 	// if the SAML_ART_PARAM_KEY parameter is in the request, it is a valid SAML
@@ -604,18 +674,6 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 		this.doRedirect(context, response, logoutRequest, idpConfig);
 	}
 
-	private boolean match(final String role, final String rolePattern) {
-		String uftRole = null;
-
-		try {
-			uftRole = URLDecoder.decode(role, "UTF-8");
-		} catch (UnsupportedEncodingException e) {
-			uftRole = role;
-		}
-
-		return RegEX.contains(uftRole, rolePattern);
-	}
-
 	@Override
 	public Assertion resolveAssertion(final HttpServletRequest request, final HttpServletResponse response,
 			final IdpConfig idpConfig) throws DotDataException, IOException, JSONException {
@@ -644,15 +702,9 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 		final boolean allowNullEmail = DotsamlPropertiesService.getOptionBoolean(idpConfig,
 				DotsamlPropertyName.DOT_SAML_EMAIL_ATTRIBUTE_ALLOW_NULL);
 
-		final String customConfiguration = new StringBuilder(
-				DotsamlPropertyName.DOT_SAML_EMAIL_ATTRIBUTE.getPropertyName()).append("=").append(emailField)
-						.append(",").append(DotsamlPropertyName.DOT_SAML_FIRSTNAME_ATTRIBUTE.getPropertyName())
-						.append("=").append(firstNameField).append(",")
-						.append(DotsamlPropertyName.DOT_SAML_LASTNAME_ATTRIBUTE.getPropertyName()).append("=")
-						.append(lastNameField).append(",")
-						.append(DotsamlPropertyName.DOT_SAML_ROLES_ATTRIBUTE.getPropertyName()).append("=")
-						.append(rolesField).toString();
-
+		final IdpConfigProfile profile = idpConfig.getProfile();
+		final List<String> unmatchedAttributes = SamlLogger.isDebugEnabled(this.getClass()) ? new ArrayList<>()
+				: null;
 		final AttributesBean.Builder attrBuilder = new AttributesBean.Builder();
 
 		validateAttributes(assertion);
@@ -667,60 +719,75 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 				"Elements of type AttributeStatement in assertion : " + assertion.getAttributeStatements().size());
 
 		assertion.getAttributeStatements().forEach(attributeStatement -> {
-			Logger.debug(this,
-					"Attribute Statement - local name: " + AttributeStatement.DEFAULT_ELEMENT_LOCAL_NAME + ", type: "
-							+ AttributeStatement.TYPE_LOCAL_NAME + ", number of attributes: "
+			SamlLogger.debug(this,
+					() -> "Attribute Statement - local name: " + AttributeStatement.DEFAULT_ELEMENT_LOCAL_NAME
+							+ ", type: " + AttributeStatement.TYPE_LOCAL_NAME + ", number of attributes: "
 							+ attributeStatement.getAttributes().size());
 
 			attributeStatement.getAttributes().forEach(attribute -> {
-				Logger.debug(this,
-						"Attribute - friendly name: " + attribute.getFriendlyName() + ", name: " + attribute.getName()
-								+ ", type: " + Attribute.TYPE_LOCAL_NAME + ", number of values: "
-								+ attribute.getAttributeValues().size());
+				SamlLogger.debug(this,
+						() -> "Attribute - friendly name: " + attribute.getFriendlyName() + ", name: "
+								+ attribute.getName() + ", type: " + Attribute.TYPE_LOCAL_NAME
+								+ ", number of values: " + attribute.getAttributeValues().size());
+
+				final UserAttribute userAttribute = this.getUserAttribute(profile, attribute);
+
+				if (null == userAttribute) {
+					if (null != unmatchedAttributes) {
+						unmatchedAttributes.add(attribute.getName());
+					}
 
-				if ((attribute.getName() != null && attribute.getName().equals(emailField))
-						|| (attribute.getFriendlyName() != null && attribute.getFriendlyName().equals(emailField))) {
+					return;
+				}
+
+				switch (userAttribute) {
+				case EMAIL:
 					this.resolveEmail(emailField, attrBuilder, attribute, nameId, allowNullEmail);
-				} else if ((attribute.getName() != null && attribute.getName().equals(lastNameField))
-						|| (attribute.getFriendlyName() != null && attribute.getFriendlyName().equals(lastNameField))) {
+					break;
+
+				case LAST_NAME:
 					Logger.debug(this, "Resolving attribute - LastName : " + lastNameField);
 
-					final String lastName = (UtilMethods
-							.isSet(attribute.getAttributeValues().get(0).getDOM().getFirstChild().getNodeValue()))
-									? attribute.getAttributeValues().get(0).getDOM().getFirstChild().getNodeValue()
-									: checkDefaultValue(lastNameForNullValue, lastNameField + " attribute is null",
-											lastNameField + " is null and the default is null too");
+					final String lastName = this.getFirstValue(attribute);
 
-					attrBuilder.lastName(lastName);
+					attrBuilder.lastName(UtilMethods.isSet(lastName) ? lastName
+							: checkDefaultValue(lastNameForNullValue, lastNameField + " attribute is null",
+									lastNameField + " is null and the default is null too"));
 
 					Logger.debug(this, "Resolved attribute - lastName : " + attrBuilder.getLastName());
-				} else if ((attribute.getName() != null && attribute.getName().equals(firstNameField))
-						|| (attribute.getFriendlyName() != null
-								&& attribute.getFriendlyName().equals(firstNameField))) {
+					break;
+
+				case FIRST_NAME:
 					Logger.debug(this, "Resolving attribute - firstName : " + firstNameField);
 
-					final String firstName = (UtilMethods
-							.isSet(attribute.getAttributeValues().get(0).getDOM().getFirstChild().getNodeValue()))
-									? attribute.getAttributeValues().get(0).getDOM().getFirstChild().getNodeValue()
-									: checkDefaultValue(firstNameForNullValue, firstNameField + " attribute is null",
-											firstNameField + " is null and the default is null too");
+					final String firstName = this.getFirstValue(attribute);
 
-					attrBuilder.firstName(firstName);
+					attrBuilder.firstName(UtilMethods.isSet(firstName) ? firstName
+							: checkDefaultValue(firstNameForNullValue, firstNameField + " attribute is null",
+									firstNameField + " is null and the default is null too"));
 
 					Logger.debug(this, "Resolved attribute - firstName : " + attrBuilder.getFirstName());
-				} else if ((attribute.getName() != null && attribute.getName().equals(rolesField))
-						|| (attribute.getFriendlyName() != null && attribute.getFriendlyName().equals(rolesField))) {
+					break;
+
+				case ROLES:
 					Logger.debug(this, "Resolving attribute - roles : " + rolesField);
 					attrBuilder.addRoles(true).roles(attribute);
 					Logger.debug(this, "Resolving attributes - roles : " + attribute);
-				} else {
-					final String attributeName = attribute.getName();
-					Logger.warn(this, attributeName + " attribute did not match any user property in the idpConfig: "
-							+ customConfiguration);
+					break;
 				}
 			});
 		});
 
+		// One summary instead of a warning per attribute, IdPs send many attributes dotCMS does not use.
+		if (null != unmatchedAttributes && !unmatchedAttributes.isEmpty()) {
+			Logger.debug(this, unmatchedAttributes.size() + " attributes did not match any user property ("
+					+ DotsamlPropertyName.DOT_SAML_EMAIL_ATTRIBUTE.getPropertyName() + "=" + emailField + ", "
+					+ DotsamlPropertyName.DOT_SAML_FIRSTNAME_ATTRIBUTE.getPropertyName() + "=" + firstNameField + ", "
+					+ DotsamlPropertyName.DOT_SAML_LASTNAME_ATTRIBUTE.getPropertyName() + "=" + lastNameField + ", "
+					+ DotsamlPropertyName.DOT_SAML_ROLES_ATTRIBUTE.getPropertyName() + "=" + rolesField + "): "
+					+ unmatchedAttributes);
+		}
+
 		AttributesBean attributesBean = attrBuilder.build();
 		Logger.debug(this, "-> Value of attributesBean = " + attributesBean.toString());
 		attributesBean = this.doubleCheckAttributes(attributesBean, firstNameField, firstNameForNullValue, lastNameField,
@@ -730,11 +797,38 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 		return attributesBean;
 	}
 
+	/**
+	 * Returns the user property of the attribute, looking up its name and
+	 * friendly name in the attribute index of the profile. When both match,
+	 * the first user property in {@link UserAttribute} order wins.
+	 */
+	private UserAttribute getUserAttribute(final IdpConfigProfile profile, final Attribute attribute) {
+		final UserAttribute byName = profile.getUserAttribute(attribute.getName());
+		final UserAttribute byFriendlyName = profile.getUserAttribute(attribute.getFriendlyName());
+
+		return (null == byName || (null != byFriendlyName && byFriendlyName.ordinal() < byName.ordinal()))
+				? byFriendlyName : byName;
+	}
+
+	/**
+	 * Returns the text of the first value of the attribute, null if it has
+	 * none.
+	 */
+	private String getFirstValue(final Attribute attribute) {
+		if (attribute.getAttributeValues().isEmpty()) {
+			return null;
+		}
+
+		final Element element = attribute.getAttributeValues().get(0).getDOM();
+
+		return (null != element && null != element.getFirstChild()) ? element.getFirstChild().getNodeValue() : null;
+	}
+
 	private void resolveEmail(final String emailField, final AttributesBean.Builder attributesBuilder,
 			final Attribute attribute, final String nameId, final boolean allowNullEmail) {
 		Logger.debug(this, "Resolving attribute - Email : " + emailField);
 
-		String emailValue = attribute.getAttributeValues().get(0).getDOM().getFirstChild().getNodeValue();
+		String emailValue = this.getFirstValue(attribute);
 
 		emailValue = (!UtilMethods.isSet(emailValue)) ? createNoReplyEmail(nameId, allowNullEmail) : emailValue;
 
@@ -777,6 +871,13 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 			// if user does not exists, create a new one.
 			user = this.createNewUser(systemUser, attributesBean, idpConfig);
 		} else {
+			if (ProvisioningFingerprintCache.getInstance().isProvisioned(idpConfig, user.getUserId(),
+					this.getProvisioningFingerprint(user, attributesBean, idpConfig))) {
+				Logger.debug(this, "User with ID '" + user.getUserId() + "' has not changed since the last login. "
+						+ "Skipping the user and roles update.");
+				return user;
+			}
+
 			// update it, since exists
 			user = this.updateUser(user, systemUser, attributesBean, idpConfig);
 		}
@@ -788,9 +889,46 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 					"were added.");
 		}
 
+		ProvisioningFingerprintCache.getInstance().provisioned(idpConfig, user.getUserId(),
+				this.getProvisioningFingerprint(user, attributesBean, idpConfig));
+
 		return user;
 	}
 
+	/**
+	 * Hashes what a login provisions: the user attributes and roles from the
+	 * IdP, and the config (and default properties) version and build roles
+	 * strategy that decide how they are applied. The role values are sorted,
+	 * the IdP may send them in any order.
+	 */
+	private long getProvisioningFingerprint(final User user, final AttributesBean attributesBean,
+			final IdpConfig idpConfig) {
+		final List<String> parts = new ArrayList<>();
+
+		parts.add(idpConfig.getId());
+		parts.add(String.valueOf(idpConfig.getVersion()));
+		parts.add(String.valueOf(DotsamlDefaultPropertiesService.getDefaultsVersion()));
+		parts.add(this.getBuildRoles(idpConfig));
+		parts.add(user.getUserId());
+		parts.add(String.valueOf(user.isActive()));
+		parts.add(attributesBean.getEmail());
+		parts.add(attributesBean.getFirstName());
+		parts.add(attributesBean.getLastName());
+		parts.add(String.valueOf(attributesBean.isAddRoles()));
+
+		if (null != attributesBean.getRoles()) {
+			final List<String> roles = new ArrayList<>();
+
+			attributesBean.getRoles().getAttributeValues().forEach(roleObject -> roles.add(
+					(null != roleObject.getDOM() && null != roleObject.getDOM().getFirstChild())
+							? roleObject.getDOM().getFirstChild().getNodeValue() : null));
+			roles.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+			parts.addAll(roles);
+		}
+
+		return ExpiringIdSet.hash(parts.toArray(new String[parts.size()]));
+	}
+
 	private String sanitizeNameId(final String nameId) {
 		return StringUtils.replace(nameId, AT_SYMBOL, AT_);
 	}
@@ -806,10 +944,6 @@ public class OpenSamlAuthenticationServiceImpl implements SamlAuthenticationServ
 				.setSignatureSigningParameters(signatureSigningParameters);
 	}
 
-	private String toString(String[] rolePatterns) {
-		return null == rolePatterns ? NULL : Arrays.asList(rolePatterns).toString();
-	}
-
 	private User updateUser(final User user, final User systemUser,
 							final AttributesBean attributesBean, final IdpConfig idpConfig) {
 		try {
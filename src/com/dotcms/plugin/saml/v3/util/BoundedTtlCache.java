@@ -0,0 +1,86 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small in-memory cache with a maximum number of entries, evicting the least
+ * recently used one when it is full, and a time to live per entry.
+ */
+public class BoundedTtlCache<K, V>
+{
+	private final long ttlMillis;
+	private final Map<K, Entry<V>> entries;
+
+	/**
+	 * @param maxSize maximum number of entries
+	 * @param ttlMillis how long an entry is kept after it is put
+	 */
+	public BoundedTtlCache( final int maxSize, final long ttlMillis )
+	{
+		this.ttlMillis = ttlMillis;
+		this.entries = new LinkedHashMap<K, Entry<V>>( 16, 0.75f, true )
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry<K, Entry<V>> eldest )
+			{
+				return this.size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the value, null if there is none or it has expired.
+	 */
+	public synchronized V get( final K key )
+	{
+		final Entry<V> entry = this.entries.get( key );
+
+		if ( entry == null )
+		{
+			return null;
+		}
+
+		if ( entry.expiresAt <= System.currentTimeMillis() )
+		{
+			this.entries.remove( key );
+			return null;
+		}
+
+		return entry.value;
+	}
+
+	public synchronized void put( final K key, final V value )
+	{
+		this.entries.put( key, new Entry<>( value, System.currentTimeMillis() + this.ttlMillis ) );
+	}
+
+	public synchronized void remove( final K key )
+	{
+		this.entries.remove( key );
+	}
+
+	public synchronized void clear()
+	{
+		this.entries.clear();
+	}
+
+	public synchronized int size()
+	{
+		return this.entries.size();
+	}
+
+	private static final class Entry<V>
+	{
+		private final V value;
+		private final long expiresAt;
+
+		private Entry( final V value, final long expiresAt )
+		{
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.opensaml.security.credential.Credential;
+
+import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Keeps the {@link Credential} created for each {@link IdpConfig}, keyed by
+ * the IdpConfig id and validated against the {@link FileFingerprint} of its
+ * private key and public certificate files, so a replaced key or cert is
+ * picked up on the next access.
+ * <p>
+ * Reads are lock-free. Creation is single-flight: concurrent callers for the
+ * same IdpConfig wait for one creation instead of creating one credential
+ * each, and the new entry replaces the old one atomically. Entries are
+ * dropped explicitly with {@link #invalidate(String)} when an IdpConfig is
+ * saved or deleted.
+ */
+public class CredentialRegistry implements Serializable {
+	private static final long serialVersionUID = 6190187302457932961L;
+
+	private static class IdpHolder {
+		private static final CredentialRegistry INSTANCE = new CredentialRegistry("IdP");
+	}
+
+	/**
+	 * Registry for the IdP credentials used to validate signatures.
+	 *
+	 * @return CredentialRegistry
+	 */
+	public static CredentialRegistry getIdpInstance() {
+		return CredentialRegistry.IdpHolder.INSTANCE;
+	}
+
+	private static class SpHolder {
+		private static final CredentialRegistry INSTANCE = new CredentialRegistry("SP");
+	}
+
+	/**
+	 * Registry for the SP credentials (dotCMS key and cert) used to sign and
+	 * decrypt.
+	 *
+	 * @return CredentialRegistry
+	 */
+	public static CredentialRegistry getSpInstance() {
+		return CredentialRegistry.SpHolder.INSTANCE;
+	}
+
+	/**
+	 * Removes the IdP and SP credentials of the IdpConfig.
+	 *
+	 * @param idpConfigId
+	 *            {@link String}
+	 */
+	public static void invalidateAll(final String idpConfigId) {
+		getIdpInstance().invalidate(idpConfigId);
+		getSpInstance().invalidate(idpConfigId);
+	}
+
+	private final String name;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	private CredentialRegistry(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the credential for the idpConfig, creating it with the factory
+	 * only if it is not registered yet or the key/cert files have changed.
+	 *
+	 * @param idpConfig
+	 *            {@link IdpConfig}
+	 * @param factory
+	 *            {@link Function} creates the credential, might throw.
+	 * @return Credential
+	 */
+	public Credential get(final IdpConfig idpConfig, final Function<IdpConfig, Credential> factory) {
+		if (null == idpConfig.getId()) {
+			this.misses.incrementAndGet();
+			return factory.apply(idpConfig);
+		}
+
+		final FileFingerprint[] stat = stat(idpConfig);
+		final Entry entry = this.entries.get(idpConfig.getId());
+
+		if (null != entry && entry.sameStat(stat)) {
+			this.hits.incrementAndGet();
+			return entry.credential;
+		}
+
+		final Entry newEntry = this.entries.compute(idpConfig.getId(), (id, current) -> {
+			if (null != current && current.sameStat(stat)) {
+				// another thread already created it.
+				this.hits.incrementAndGet();
+				return current;
+			}
+
+			final FileFingerprint[] fingerprints = withContentHash(stat);
+
+			if (null != current && current.sameContent(fingerprints)) {
+				// the files were touched but the content is the same.
+				this.hits.incrementAndGet();
+				return new Entry(fingerprints, current.credential);
+			}
+
+			this.misses.incrementAndGet();
+			Logger.debug(CredentialRegistry.class, "Creating " + this.name + " credential for IdP: " + id);
+
+			final Credential credential = factory.apply(idpConfig);
+
+			return (null != credential) ? new Entry(fingerprints, credential) : null;
+		});
+
+		return (null != newEntry) ? newEntry.credential : null;
+	}
+
+	/**
+	 * Removes the credential of the IdP, it will be created again on the next
+	 * access.
+	 *
+	 * @param idpConfigId
+	 *            {@link String}
+	 */
+	public void invalidate(final String idpConfigId) {
+		if (null != idpConfigId) {
+			this.entries.remove(idpConfigId);
+		}
+	}
+
+	/**
+	 * Removes all the credentials.
+	 */
+	public void clear() {
+		this.entries.clear();
+	}
+
+	/**
+	 * Number of lookups answered with a registered credential.
+	 *
+	 * @return long
+	 */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Number of lookups that had to create the credential.
+	 *
+	 * @return long
+	 */
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	public int size() {
+		return this.entries.size();
+	}
+
+	@Override
+	public String toString() {
+		return "CredentialRegistry{" + "name='" + name + '\'' + ", size=" + size() + ", hits=" + getHits()
+				+ ", misses=" + getMisses() + '}';
+	}
+
+	private static FileFingerprint[] stat(final IdpConfig idpConfig) {
+		return new FileFingerprint[] { FileFingerprint.stat(idpConfig.getPrivateKey()),
+				FileFingerprint.stat(idpConfig.getPublicCert()) };
+	}
+
+	private static FileFingerprint[] withContentHash(final FileFingerprint[] stat) {
+		final FileFingerprint[] fingerprints = new FileFingerprint[stat.length];
+
+		for (int i = 0; i < stat.length; i++) {
+			fingerprints[i] = stat[i].withContentHash();
+		}
+
+		return fingerprints;
+	}
+
+	private static final class Entry {
+		private final FileFingerprint[] fingerprints;
+		private final Credential credential;
+
+		private Entry(final FileFingerprint[] fingerprints, final Credential credential) {
+			this.fingerprints = fingerprints;
+			this.credential = credential;
+		}
+
+		private boolean sameStat(final FileFingerprint[] other) {
+			for (int i = 0; i < this.fingerprints.length; i++) {
+				if (!this.fingerprints[i].sameStat(other[i])) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		private boolean sameContent(final FileFingerprint[] other) {
+			for (int i = 0; i < this.fingerprints.length; i++) {
+				if (!this.fingerprints[i].sameContent(other[i])) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
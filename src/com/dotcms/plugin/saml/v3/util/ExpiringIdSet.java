@@ -0,0 +1,288 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Bounded set of 64 bit id hashes, each one with its own expiry time.
+ * <p>
+ * The set is split in stripes, each one an open addressing table of primitive
+ * longs guarded by its own lock, so the memory is allocated once and never
+ * grows: when a stripe is full and none of its entries has expired, adding
+ * fails instead of evicting live entries. Expired entries are dropped when the
+ * stripe ticks (at most once per tick interval, on access) or when it is full.
+ */
+public class ExpiringIdSet
+{
+	/**
+	 * Result of {@link ExpiringIdSet#add(long, long, long)}.
+	 */
+	public enum AddResult
+	{
+		ADDED, PRESENT, FULL
+	}
+
+	private static final int STRIPES = 16;
+	private static final long EMPTY = 0L;
+
+	private final Stripe[] stripes = new Stripe[ STRIPES ];
+
+	/**
+	 * @param capacity maximum number of live entries
+	 * @param tickMillis how often the expired entries of a stripe are dropped
+	 */
+	public ExpiringIdSet( final int capacity, final long tickMillis )
+	{
+		final int stripeCapacity = Math.max( 16, ( capacity + STRIPES - 1 ) / STRIPES );
+
+		for ( int i = 0; i < STRIPES; i++ )
+		{
+			this.stripes[ i ] = new Stripe( stripeCapacity, tickMillis );
+		}
+	}
+
+	/**
+	 * Returns a 64 bit hash of the parts (SHA-256 based, so it can not be
+	 * chosen to collide with another id), never 0.
+	 */
+	public static long hash( final String... parts )
+	{
+		try
+		{
+			final MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+
+			for ( String part : parts )
+			{
+				digest.update( String.valueOf( part ).getBytes( StandardCharsets.UTF_8 ) );
+				digest.update( (byte) 0 );
+			}
+
+			final byte[] bytes = digest.digest();
+			long hash = 0;
+
+			for ( int i = 0; i < 8; i++ )
+			{
+				hash = ( hash << 8 ) | ( bytes[ i ] & 0xFF );
+			}
+
+			return ( hash != EMPTY ) ? hash : 1L;
+		}
+		catch ( NoSuchAlgorithmException exception )
+		{
+			// every JVM has SHA-256.
+			throw new IllegalStateException( exception );
+		}
+	}
+
+	/**
+	 * True if the hash is in the set and has not expired.
+	 */
+	public boolean contains( final long hash, final long now )
+	{
+		return this.stripe( hash ).contains( hash, now );
+	}
+
+	/**
+	 * Adds the hash unless it is already in the set and has not expired.
+	 */
+	public AddResult add( final long hash, final long expiresAt, final long now )
+	{
+		return this.stripe( hash ).add( hash, expiresAt, now );
+	}
+
+	/**
+	 * Removes the hash, returns true if it was in the set and had not expired.
+	 */
+	public boolean remove( final long hash, final long now )
+	{
+		return this.stripe( hash ).remove( hash, now );
+	}
+
+	public int size()
+	{
+		int size = 0;
+
+		for ( Stripe stripe : this.stripes )
+		{
+			size += stripe.size();
+		}
+
+		return size;
+	}
+
+	private Stripe stripe( final long hash )
+	{
+		// the high bits pick the stripe, the low bits the slot.
+		return this.stripes[ (int) ( hash >>> 60 ) & ( STRIPES - 1 ) ];
+	}
+
+	private static final class Stripe
+	{
+		private final int capacity;
+		private final int mask;
+		private final long tickMillis;
+		private final long[] keys;
+		private final long[] expiries;
+
+		private int size = 0;
+		private long nextTick = 0;
+
+		private Stripe( final int capacity, final long tickMillis )
+		{
+			// at most half full, so the probe sequences stay short.
+			final int tableSize = Integer.highestOneBit( capacity * 2 - 1 ) << 1;
+
+			this.capacity = capacity;
+			this.mask = tableSize - 1;
+			this.tickMillis = tickMillis;
+			this.keys = new long[ tableSize ];
+			this.expiries = new long[ tableSize ];
+		}
+
+		private synchronized boolean contains( final long hash, final long now )
+		{
+			final int index = this.find( hash );
+
+			return index >= 0 && this.expiries[ index ] > now;
+		}
+
+		private synchronized AddResult add( final long hash, final long expiresAt, final long now )
+		{
+			this.tick( now );
+
+			final int index = this.find( hash );
+
+			if ( index >= 0 )
+			{
+				if ( this.expiries[ index ] > now )
+				{
+					return AddResult.PRESENT;
+				}
+
+				this.expiries[ index ] = expiresAt;
+				return AddResult.ADDED;
+			}
+
+			if ( this.size >= this.capacity )
+			{
+				this.purge( now );
+
+				if ( this.size >= this.capacity )
+				{
+					return AddResult.FULL;
+				}
+			}
+
+			int slot = (int) hash & this.mask;
+
+			while ( this.keys[ slot ] != EMPTY )
+			{
+				slot = ( slot + 1 ) & this.mask;
+			}
+
+			this.keys[ slot ] = hash;
+			this.expiries[ slot ] = expiresAt;
+			this.size++;
+
+			return AddResult.ADDED;
+		}
+
+		private synchronized boolean remove( final long hash, final long now )
+		{
+			final int index = this.find( hash );
+
+			if ( index < 0 )
+			{
+				return false;
+			}
+
+			final boolean live = this.expiries[ index ] > now;
+
+			this.removeAt( index );
+
+			return live;
+		}
+
+		private synchronized int size()
+		{
+			return this.size;
+		}
+
+		private int find( final long hash )
+		{
+			int slot = (int) hash & this.mask;
+
+			while ( this.keys[ slot ] != EMPTY )
+			{
+				if ( this.keys[ slot ] == hash )
+				{
+					return slot;
+				}
+
+				slot = ( slot + 1 ) & this.mask;
+			}
+
+			return -1;
+		}
+
+		private void tick( final long now )
+		{
+			if ( now >= this.nextTick )
+			{
+				this.purge( now );
+				this.nextTick = now + this.tickMillis;
+			}
+		}
+
+		private void purge( final long now )
+		{
+			if ( this.size == 0 )
+			{
+				return;
+			}
+
+			for ( int slot = 0; slot <= this.mask; slot++ )
+			{
+				// removeAt may shift a later entry into this slot, so check it again.
+				while ( this.keys[ slot ] != EMPTY && this.expiries[ slot ] <= now )
+				{
+					this.removeAt( slot );
+				}
+			}
+		}
+
+		/**
+		 * Linear probing deletion without tombstones: the entries after the
+		 * removed one are shifted back when their probe sequence crosses it.
+		 */
+		private void removeAt( int slot )
+		{
+			int next = slot;
+
+			while ( true )
+			{
+				next = ( next + 1 ) & this.mask;
+
+				if ( this.keys[ next ] == EMPTY )
+				{
+					break;
+				}
+
+				final int home = (int) this.keys[ next ] & this.mask;
+				final boolean stays = ( slot <= next ) ? ( slot < home && home <= next ) : ( slot < home || home <= next );
+
+				if ( !stays )
+				{
+					this.keys[ slot ] = this.keys[ next ];
+					this.expiries[ slot ] = this.expiries[ next ];
+					slot = next;
+				}
+			}
+
+			this.keys[ slot ] = EMPTY;
+			this.expiries[ slot ] = 0;
+			this.size--;
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.dotmarketing.util.Logger;
+
+/**
+ * Identifies a version of a file on disk: path, size, last modified time and
+ * (optionally) a SHA-256 hash of its content.
+ * <p>
+ * The stat part is cheap to compute and is meant to be checked on every
+ * access; the content hash is only computed when the stat part changes, so a
+ * file that was just touched (same content) does not force the caller to
+ * rebuild whatever it derived from it.
+ */
+public final class FileFingerprint implements Serializable {
+	private static final long serialVersionUID = 4153826735263317014L;
+
+	private static final String HASH_ALGORITHM = "SHA-256";
+	private static final int BUFFER_SIZE = 8192;
+
+	private final String path;
+	private final long size;
+	private final long lastModified;
+	private final byte[] contentHash;
+
+	private FileFingerprint(final String path, final long size, final long lastModified, final byte[] contentHash) {
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.contentHash = contentHash;
+	}
+
+	/**
+	 * Creates the fingerprint of the file without reading its content.
+	 *
+	 * @param file
+	 *            {@link File}
+	 * @return FileFingerprint
+	 */
+	public static FileFingerprint stat(final File file) {
+		return (null == file) ? new FileFingerprint(null, -1, -1, null)
+				: new FileFingerprint(file.getAbsolutePath(), file.exists() ? file.length() : -1, file.lastModified(), null);
+	}
+
+	/**
+	 * Creates the fingerprint of the file including the hash of its content.
+	 *
+	 * @param file
+	 *            {@link File}
+	 * @return FileFingerprint
+	 */
+	public static FileFingerprint of(final File file) {
+		return stat(file).withContentHash();
+	}
+
+	/**
+	 * Returns a copy of this fingerprint including the content hash, the file
+	 * is read just once.
+	 *
+	 * @return FileFingerprint
+	 */
+	public FileFingerprint withContentHash() {
+		if (null != this.contentHash || null == this.path) {
+			return this;
+		}
+
+		return new FileFingerprint(this.path, this.size, this.lastModified, hash(new File(this.path)));
+	}
+
+	/**
+	 * True if both fingerprints point to the same path, with the same size and
+	 * modification time. The content is not compared.
+	 *
+	 * @param other
+	 *            {@link FileFingerprint}
+	 * @return boolean
+	 */
+	public boolean sameStat(final FileFingerprint other) {
+		return null != other && this.size == other.size && this.lastModified == other.lastModified
+				&& Objects.equals(this.path, other.path);
+	}
+
+	/**
+	 * True if both fingerprints have been hashed and the content is the same.
+	 *
+	 * @param other
+	 *            {@link FileFingerprint}
+	 * @return boolean
+	 */
+	public boolean sameContent(final FileFingerprint other) {
+		return null != other && null != this.contentHash && Objects.equals(this.path, other.path)
+				&& Arrays.equals(this.contentHash, other.contentHash);
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	private static byte[] hash(final File file) {
+		if (!file.exists()) {
+			return null;
+		}
+
+		try (InputStream inputStream = new FileInputStream(file)) {
+			final MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+
+			while ((read = inputStream.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+
+			return digest.digest();
+		} catch (IOException | NoSuchAlgorithmException e) {
+			Logger.warn(FileFingerprint.class, "Could not hash the file: " + file + ", " + e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FileFingerprint{" + "path='" + path + '\'' + ", size=" + size + ", lastModified=" + lastModified
+				+ ", hashed=" + (null != contentHash) + '}';
+	}
+}
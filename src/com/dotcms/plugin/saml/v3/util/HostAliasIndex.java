@@ -0,0 +1,141 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+import com.dotmarketing.beans.Host;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.exception.DotSecurityException;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Index of the lower case hostnames and aliases of all the sites to their
+ * canonical hostname, so the site of a request is resolved with one map
+ * lookup instead of scanning all the sites.
+ * <p>
+ * The index is built on the first lookup and rebuilt, also lazily, when a
+ * host is saved, published, archived or deleted (see
+ * {@link HostAliasIndexContentletHook}) or when it gets older than
+ * {@link DotSamlConstants#DOT_SAML_HOST_INDEX_MAX_AGE_SECONDS}.
+ */
+public class HostAliasIndex implements Serializable
+{
+	private static class SingletonHolder
+	{
+		private static final HostAliasIndex INSTANCE = new HostAliasIndex();
+	}
+
+	private static final long serialVersionUID = 2404386367934262185L;
+
+	private static final String ALIAS_SEPARATOR_REGEX = "[\\s,]+";
+
+	public static HostAliasIndex getInstance()
+	{
+		return HostAliasIndex.SingletonHolder.INSTANCE;
+	}
+
+	private final AtomicBoolean dirty = new AtomicBoolean( true );
+	private final long maxAgeMillis = TimeUnit.SECONDS.toMillis( Config.getIntProperty(
+			DotSamlConstants.DOT_SAML_HOST_INDEX_MAX_AGE_SECONDS, DotSamlConstants.DOT_SAML_HOST_INDEX_MAX_AGE_SECONDS_DEFAULT_VALUE ) );
+
+	private volatile Map<String, String> hostnames = Collections.emptyMap();
+	private volatile long builtAt = 0;
+
+	/**
+	 * Returns the canonical hostname of the site whose hostname or alias is
+	 * the given name (case insensitive), null if there is no such site.
+	 * 
+	 * @param name {@link String} hostname or alias, usually request.getServerName()
+	 * @return String
+	 */
+	public String findHostname( final String name ) throws DotDataException
+	{
+		if ( !UtilMethods.isSet( name ) )
+		{
+			return null;
+		}
+
+		if ( this.dirty.get() || System.currentTimeMillis() - this.builtAt > this.maxAgeMillis )
+		{
+			this.rebuild();
+		}
+
+		return this.hostnames.get( name.toLowerCase() );
+	}
+
+	/**
+	 * Flags the index to be rebuilt on the next lookup.
+	 */
+	public void invalidate()
+	{
+		this.dirty.set( true );
+	}
+
+	private synchronized void rebuild() throws DotDataException
+	{
+		// another thread might have rebuilt it while we were waiting.
+		if ( !this.dirty.get() && System.currentTimeMillis() - this.builtAt <= this.maxAgeMillis )
+		{
+			return;
+		}
+
+		// cleared before reading, so a change that lands during the read flags it again.
+		this.dirty.set( false );
+
+		final List<Host> hosts;
+
+		try
+		{
+			hosts = APILocator.getHostAPI().findAll( APILocator.getUserAPI().getSystemUser(), false );
+		}
+		catch ( DotSecurityException | DotDataException exception )
+		{
+			this.dirty.set( true );
+			throw new DotDataException( "An error occurred when retrieving all dotCMS Sites", exception );
+		}
+
+		final Map<String, String> newHostnames = new HashMap<>();
+
+		if ( hosts != null )
+		{
+			for ( final Host host : hosts )
+			{
+				final String hostname = host.getHostname();
+
+				if ( !UtilMethods.isSet( hostname ) )
+				{
+					continue;
+				}
+
+				// first one wins, in the same order the sites used to be scanned.
+				newHostnames.putIfAbsent( hostname.toLowerCase(), hostname );
+
+				if ( UtilMethods.isSet( host.getAliases() ) )
+				{
+					for ( final String alias : host.getAliases().split( ALIAS_SEPARATOR_REGEX ) )
+					{
+						if ( UtilMethods.isSet( alias ) )
+						{
+							newHostnames.putIfAbsent( alias.toLowerCase(), hostname );
+						}
+					}
+				}
+			}
+		}
+
+		Logger.debug( this, "Host alias index built with " + newHostnames.size() + " names" );
+
+		this.hostnames = newHostnames;
+		this.builtAt = System.currentTimeMillis();
+	}
+
+}
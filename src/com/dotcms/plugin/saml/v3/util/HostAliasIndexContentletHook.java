@@ -0,0 +1,57 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import com.dotmarketing.portlets.contentlet.business.ContentletAPIPostHookAbstractImp;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.liferay.portal.model.User;
+
+/**
+ * Flags the {@link HostAliasIndex} to be rebuilt whenever a host (or its
+ * aliases) is saved, published, archived or deleted.
+ */
+public class HostAliasIndexContentletHook extends ContentletAPIPostHookAbstractImp
+{
+	@Override
+	public void checkin( Contentlet currentContentlet, User user, boolean respectFrontendRoles, Contentlet returnValue )
+	{
+		this.invalidate( null != returnValue ? returnValue : currentContentlet );
+	}
+
+	@Override
+	public void publish( Contentlet contentlet, User user, boolean respectFrontendRoles )
+	{
+		this.invalidate( contentlet );
+	}
+
+	@Override
+	public void unpublish( Contentlet contentlet, User user, boolean respectFrontendRoles )
+	{
+		this.invalidate( contentlet );
+	}
+
+	@Override
+	public void archive( Contentlet contentlet, User user, boolean respectFrontendRoles )
+	{
+		this.invalidate( contentlet );
+	}
+
+	@Override
+	public void unarchive( Contentlet contentlet, User user, boolean respectFrontendRoles )
+	{
+		this.invalidate( contentlet );
+	}
+
+	@Override
+	public void delete( Contentlet contentlet, User user, boolean respectFrontendRoles )
+	{
+		this.invalidate( contentlet );
+	}
+
+	private void invalidate( final Contentlet contentlet )
+	{
+		if ( null != contentlet && contentlet.isHost() )
+		{
+			HostAliasIndex.getInstance().invalidate();
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import com.dotmarketing.util.Logger;
+
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+
+import javax.xml.parsers.DocumentBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link BasicParserPool} that reports to a {@link MetricRegistry}:
+ * <ul>
+ * <li><code>dotsaml.parserpool.checkout</code>: time to get a parser from the
+ * pool, including the time to create one when the pool is empty.</li>
+ * <li><code>dotsaml.parserpool.created</code>: parsers created.</li>
+ * <li><code>dotsaml.parserpool.idle</code>, <code>dotsaml.parserpool.inuse</code>
+ * and <code>dotsaml.parserpool.max</code>: parsers in the pool, checked out,
+ * and the maximum kept in the pool.</li>
+ * </ul>
+ * When the parsers in use are often above the maximum, parsers are created
+ * and dropped on every login, and the maximum should be raised.
+ */
+public class InstrumentedParserPool extends BasicParserPool
+{
+	private static final String PREFIX = "dotsaml.parserpool";
+
+	private final Timer checkoutTimer;
+	private final Meter createdMeter;
+	private final AtomicInteger inUse = new AtomicInteger();
+
+	public InstrumentedParserPool( final MetricRegistry registry )
+	{
+		this.checkoutTimer = registry.timer( MetricRegistry.name( PREFIX, "checkout" ) );
+		this.createdMeter = registry.meter( MetricRegistry.name( PREFIX, "created" ) );
+
+		// Replaces the gauges of a previous pool (the plugin can be redeployed).
+		this.register( registry, "idle", this::getPoolSize );
+		this.register( registry, "inuse", this.inUse::get );
+		this.register( registry, "max", this::getMaxPoolSize );
+	}
+
+	private void register( final MetricRegistry registry, final String name, final Gauge<Integer> gauge )
+	{
+		final String fullName = MetricRegistry.name( PREFIX, name );
+
+		registry.remove( fullName );
+		registry.register( fullName, gauge );
+	}
+
+	@Override
+	public DocumentBuilder getBuilder() throws XMLParserException
+	{
+		final Timer.Context context = this.checkoutTimer.time();
+
+		try
+		{
+			final DocumentBuilder builder = super.getBuilder();
+
+			this.inUse.incrementAndGet();
+			return builder;
+		}
+		finally
+		{
+			context.stop();
+		}
+	}
+
+	@Override
+	public void returnBuilder( final DocumentBuilder builder )
+	{
+		super.returnBuilder( builder );
+
+		if ( builder != null )
+		{
+			this.inUse.decrementAndGet();
+		}
+	}
+
+	@Override
+	protected DocumentBuilder createBuilder() throws XMLParserException
+	{
+		this.createdMeter.mark();
+
+		return super.createBuilder();
+	}
+
+	/**
+	 * Creates up to <code>size</code> parsers (no more than the maximum pool
+	 * size) and leaves them in the pool. The pool must be initialized.
+	 */
+	public void prewarm( final int size )
+	{
+		final List<DocumentBuilder> builders = new ArrayList<>();
+
+		try
+		{
+			while ( builders.size() < Math.min( size, this.getMaxPoolSize() ) )
+			{
+				builders.add( this.getBuilder() );
+			}
+		}
+		catch ( XMLParserException exception )
+		{
+			Logger.warn( this, "Could not prewarm the SAML parser pool: " + exception.getMessage() );
+		}
+		finally
+		{
+			builders.forEach( this::returnBuilder );
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Remembers the ids of the AuthnRequests sent to the IdPs until the user has
+ * had time to log in, so the InResponseTo of a SAML Response can be checked
+ * without keeping an HTTP session for every visitor redirected to the IdP.
+ * <p>
+ * The ids are kept as 64 bit hashes in an {@link ExpiringIdSet} of fixed
+ * capacity ({@link DotSamlConstants#DOT_SAML_AUTHN_REQUEST_CAPACITY}), each
+ * one for {@link DotSamlConstants#DOT_SAML_AUTHN_REQUEST_TTL_SECONDS}. An id
+ * can only be completed once.
+ * <p>
+ * It is only used when {@link DotSamlConstants#DOT_SAML_VALIDATE_IN_RESPONSE_TO}
+ * is on, since the ids are not shared with the other nodes of a cluster.
+ */
+public class OutstandingRequestStore
+{
+	private static class SingletonHolder
+	{
+		private static final OutstandingRequestStore INSTANCE = new OutstandingRequestStore();
+	}
+
+	private static final long TICK_MILLIS = 1000;
+
+	public static OutstandingRequestStore getInstance()
+	{
+		return OutstandingRequestStore.SingletonHolder.INSTANCE;
+	}
+
+	private final ExpiringIdSet requestIds = new ExpiringIdSet( Config.getIntProperty(
+			DotSamlConstants.DOT_SAML_AUTHN_REQUEST_CAPACITY, DotSamlConstants.DOT_SAML_AUTHN_REQUEST_CAPACITY_DEFAULT_VALUE ), TICK_MILLIS );
+
+	private final long ttlMillis = Config.getIntProperty( DotSamlConstants.DOT_SAML_AUTHN_REQUEST_TTL_SECONDS,
+			DotSamlConstants.DOT_SAML_AUTHN_REQUEST_TTL_SECONDS_DEFAULT_VALUE ) * 1000L;
+
+	private OutstandingRequestStore()
+	{
+
+	}
+
+	/**
+	 * Returns true if the InResponseTo of the responses is checked.
+	 *
+	 * @return boolean
+	 */
+	public boolean isEnabled()
+	{
+		return Config.getBooleanProperty( DotSamlConstants.DOT_SAML_VALIDATE_IN_RESPONSE_TO, DotSamlConstants.DOT_SAML_VALIDATE_IN_RESPONSE_TO_DEFAULT_VALUE );
+	}
+
+	/**
+	 * Records the id of an AuthnRequest sent to the IdP. When the store is
+	 * full the id is not recorded, and the response to it will be rejected.
+	 *
+	 * @param idpConfig {@link IdpConfig}
+	 * @param requestId {@link String} AuthnRequest id
+	 */
+	public void register( final IdpConfig idpConfig, final String requestId )
+	{
+		final long now = System.currentTimeMillis();
+
+		if ( this.requestIds.add( ExpiringIdSet.hash( idpConfig.getId(), requestId ), now + this.ttlMillis, now ) == ExpiringIdSet.AddResult.FULL )
+		{
+			Logger.warn( this, "The SAML outstanding request store is full, the response to: " + requestId
+					+ " will be rejected. Consider raising: " + DotSamlConstants.DOT_SAML_AUTHN_REQUEST_CAPACITY );
+		}
+	}
+
+	/**
+	 * Returns true if the id was sent to the IdP and has not been completed or
+	 * expired.
+	 *
+	 * @param idpConfig {@link IdpConfig}
+	 * @param requestId {@link String} InResponseTo of the response
+	 * @return boolean
+	 */
+	public boolean isOutstanding( final IdpConfig idpConfig, final String requestId )
+	{
+		return requestId != null && this.requestIds.contains( ExpiringIdSet.hash( idpConfig.getId(), requestId ), System.currentTimeMillis() );
+	}
+
+	/**
+	 * Forgets the id, returns true if it was outstanding. Only the first of
+	 * the responses to the same request gets true.
+	 *
+	 * @param idpConfig {@link IdpConfig}
+	 * @param requestId {@link String} InResponseTo of the response
+	 * @return boolean
+	 */
+	public boolean complete( final IdpConfig idpConfig, final String requestId )
+	{
+		return requestId != null && this.requestIds.remove( ExpiringIdSet.hash( idpConfig.getId(), requestId ), System.currentTimeMillis() );
+	}
+}
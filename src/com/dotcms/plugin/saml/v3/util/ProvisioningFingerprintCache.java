@@ -0,0 +1,88 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+
+import com.dotmarketing.util.Config;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers, per user and IdP, the fingerprint of what the last login
+ * provisioned (name, email, roles and the settings used), so a login that
+ * would write the same again can skip updating the user and its roles.
+ * <p>
+ * Entries expire after {@link DotSamlConstants#DOT_SAML_PROVISIONING_FINGERPRINT_TTL_SECONDS},
+ * so changes made to the user in dotCMS are overwritten by the next login
+ * after that, as they were on every login before. A TTL of 0 disables it.
+ */
+public class ProvisioningFingerprintCache
+{
+	private static class SingletonHolder
+	{
+		private static final ProvisioningFingerprintCache INSTANCE = new ProvisioningFingerprintCache();
+	}
+
+	public static ProvisioningFingerprintCache getInstance()
+	{
+		return ProvisioningFingerprintCache.SingletonHolder.INSTANCE;
+	}
+
+	private final long ttlMillis = TimeUnit.SECONDS.toMillis( Config.getIntProperty(
+			DotSamlConstants.DOT_SAML_PROVISIONING_FINGERPRINT_TTL_SECONDS, DotSamlConstants.DOT_SAML_PROVISIONING_FINGERPRINT_TTL_SECONDS_DEFAULT_VALUE ) );
+
+	private final BoundedTtlCache<String, Long> fingerprints = new BoundedTtlCache<>( Config.getIntProperty(
+			DotSamlConstants.DOT_SAML_PROVISIONING_FINGERPRINT_CAPACITY, DotSamlConstants.DOT_SAML_PROVISIONING_FINGERPRINT_CAPACITY_DEFAULT_VALUE ), this.ttlMillis );
+
+	private ProvisioningFingerprintCache()
+	{
+
+	}
+
+	/**
+	 * Returns true if the last login of the user on the IdP provisioned the
+	 * same fingerprint.
+	 *
+	 * @param idpConfig {@link IdpConfig}
+	 * @param userId {@link String}
+	 * @param fingerprint long
+	 * @return boolean
+	 */
+	public boolean isProvisioned( final IdpConfig idpConfig, final String userId, final long fingerprint )
+	{
+		final Long provisioned = ( this.ttlMillis > 0 ) ? this.fingerprints.get( this.key( idpConfig, userId ) ) : null;
+
+		return provisioned != null && provisioned == fingerprint;
+	}
+
+	/**
+	 * Records the fingerprint once the user and its roles are provisioned.
+	 *
+	 * @param idpConfig {@link IdpConfig}
+	 * @param userId {@link String}
+	 * @param fingerprint long
+	 */
+	public void provisioned( final IdpConfig idpConfig, final String userId, final long fingerprint )
+	{
+		if ( this.ttlMillis > 0 )
+		{
+			this.fingerprints.put( this.key( idpConfig, userId ), fingerprint );
+		}
+	}
+
+	/**
+	 * Forgets the fingerprint, so the next login provisions the user.
+	 *
+	 * @param idpConfig {@link IdpConfig}
+	 * @param userId {@link String}
+	 */
+	public void invalidate( final IdpConfig idpConfig, final String userId )
+	{
+		this.fingerprints.remove( this.key( idpConfig, userId ) );
+	}
+
+	private String key( final IdpConfig idpConfig, final String userId )
+	{
+		return idpConfig.getId() + ":" + userId;
+	}
+}
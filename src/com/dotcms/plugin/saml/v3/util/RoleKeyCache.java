@@ -0,0 +1,96 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+
+import com.dotmarketing.business.Role;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.util.Config;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the keys of the IdP roles that match no dotCMS role, since IdPs send
+ * many groups that are not dotCMS roles. The roles found are not cached here,
+ * they are served by the {@link com.dotmarketing.business.RoleAPI} cache,
+ * which is flushed when a role is deleted or saved.
+ * <p>
+ * Entries expire after {@link DotSamlConstants#DOT_SAML_ROLE_CACHE_TTL_SECONDS}
+ * (0 disables the cache), so a role created in dotCMS is picked up after
+ * that; a role created by the plugin is picked up at once.
+ */
+public class RoleKeyCache
+{
+	private static class SingletonHolder
+	{
+		private static final RoleKeyCache INSTANCE = new RoleKeyCache();
+	}
+
+	public static RoleKeyCache getInstance()
+	{
+		return RoleKeyCache.SingletonHolder.INSTANCE;
+	}
+
+	/**
+	 * Loads the role of a key, null if there is none.
+	 */
+	@FunctionalInterface
+	public interface RoleLoader
+	{
+		Role load( String roleKey ) throws DotDataException;
+	}
+
+	private final long ttlMillis = TimeUnit.SECONDS.toMillis( Config.getIntProperty(
+			DotSamlConstants.DOT_SAML_ROLE_CACHE_TTL_SECONDS, DotSamlConstants.DOT_SAML_ROLE_CACHE_TTL_SECONDS_DEFAULT_VALUE ) );
+
+	private final BoundedTtlCache<String, Boolean> missingRoleKeys = new BoundedTtlCache<>( Config.getIntProperty(
+			DotSamlConstants.DOT_SAML_ROLE_CACHE_CAPACITY, DotSamlConstants.DOT_SAML_ROLE_CACHE_CAPACITY_DEFAULT_VALUE ), this.ttlMillis );
+
+	private RoleKeyCache()
+	{
+
+	}
+
+	/**
+	 * Returns the role of the key, null without loading it if the key is
+	 * known to have no role.
+	 *
+	 * @param roleKey {@link String}
+	 * @param loader {@link RoleLoader}
+	 * @return Role, null if the key has no role
+	 * @throws DotDataException if the role could not be loaded
+	 */
+	public Role get( final String roleKey, final RoleLoader loader ) throws DotDataException
+	{
+		if ( this.ttlMillis <= 0 || roleKey == null )
+		{
+			return loader.load( roleKey );
+		}
+
+		if ( this.missingRoleKeys.get( roleKey ) != null )
+		{
+			return null;
+		}
+
+		final Role role = loader.load( roleKey );
+
+		if ( role == null )
+		{
+			this.missingRoleKeys.put( roleKey, Boolean.TRUE );
+		}
+
+		return role;
+	}
+
+	/**
+	 * Forgets the key, so the next lookup loads it.
+	 *
+	 * @param roleKey {@link String}
+	 */
+	public void invalidate( final String roleKey )
+	{
+		if ( roleKey != null )
+		{
+			this.missingRoleKeys.remove( roleKey );
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import java.util.function.Supplier;
+
+import org.opensaml.core.xml.XMLObject;
+
+import com.dotmarketing.util.Logger;
+
+/**
+ * Lazy logging facade for the SAML hot path. The message is only built when
+ * debug is enabled for the logging class, so expensive renderings (XML dumps,
+ * site lists, arrays) cost nothing on a production log level.
+ * 
+ * <pre>
+ * SamlLogger.debug(this, () -&gt; "Available sites [" + helper.getSiteNames() + "]");
+ * SamlLogger.debugXml(this, "Decrypted Assertion:", assertion);
+ * </pre>
+ */
+public final class SamlLogger {
+
+	private SamlLogger() {
+	}
+
+	/**
+	 * True if debug is enabled for the class.
+	 * 
+	 * @param clazz
+	 *            {@link Class}
+	 * @return boolean
+	 */
+	public static boolean isDebugEnabled(final Class<?> clazz) {
+		return Logger.isDebugEnabled(clazz);
+	}
+
+	/**
+	 * Logs the supplied message on debug, the supplier is only called if debug
+	 * is enabled for the class.
+	 * 
+	 * @param clazz
+	 *            {@link Class}
+	 * @param message
+	 *            {@link Supplier}
+	 */
+	public static void debug(final Class<?> clazz, final Supplier<String> message) {
+		if (Logger.isDebugEnabled(clazz)) {
+			Logger.debug(clazz, message.get());
+		}
+	}
+
+	/**
+	 * Logs the supplied message on debug for the class of the caller.
+	 * 
+	 * @param caller
+	 *            {@link Object}
+	 * @param message
+	 *            {@link Supplier}
+	 */
+	public static void debug(final Object caller, final Supplier<String> message) {
+		debug(caller.getClass(), message);
+	}
+
+	/**
+	 * Logs the title and the XML rendering of the object on debug. The object
+	 * is only marshalled if debug is enabled for the class of the caller.
+	 * 
+	 * @param caller
+	 *            {@link Object}
+	 * @param title
+	 *            {@link String}
+	 * @param xmlObject
+	 *            {@link XMLObject}
+	 */
+	public static void debugXml(final Object caller, final String title, final XMLObject xmlObject) {
+		final Class<?> clazz = caller.getClass();
+
+		if (Logger.isDebugEnabled(clazz)) {
+			Logger.debug(clazz, title);
+			Logger.debug(clazz, "\n\n" + SamlUtils.toXMLObjectString(xmlObject));
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import com.dotmarketing.util.Logger;
+
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs the SAML metrics, one line per metric, to the dotCMS log.
+ */
+public class SamlMetricsLogReporter extends ScheduledReporter
+{
+	public SamlMetricsLogReporter( final MetricRegistry registry )
+	{
+		super( registry, "dotsaml-metrics-log-reporter", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS );
+	}
+
+	@Override
+	@SuppressWarnings( "rawtypes" )
+	public void report( final SortedMap<String, Gauge> gauges, final SortedMap<String, Counter> counters,
+			final SortedMap<String, Histogram> histograms, final SortedMap<String, Meter> meters, final SortedMap<String, Timer> timers )
+	{
+		gauges.forEach( ( name, gauge ) -> Logger.info( this, name + ": " + gauge.getValue() ) );
+		counters.forEach( ( name, counter ) -> Logger.info( this, name + ": " + counter.getCount() ) );
+		histograms.forEach( ( name, histogram ) -> Logger.info( this, name + ": count=" + histogram.getCount()
+				+ ", " + this.toString( histogram.getSnapshot(), 1 ) ) );
+		meters.forEach( ( name, meter ) -> Logger.info( this, name + ": count=" + meter.getCount()
+				+ ", m1=" + this.convertRate( meter.getOneMinuteRate() ) + "/" + this.getRateUnit() ) );
+		timers.forEach( ( name, timer ) -> Logger.info( this, name + ": count=" + timer.getCount()
+				+ ", m1=" + this.convertRate( timer.getOneMinuteRate() ) + "/" + this.getRateUnit()
+				+ ", " + this.toString( timer.getSnapshot(), this.convertDuration( 1 ) ) + " " + this.getDurationUnit() ) );
+	}
+
+	private String toString( final Snapshot snapshot, final double factor )
+	{
+		return String.format( "mean=%.3f, p95=%.3f, p99=%.3f, max=%.3f", snapshot.getMean() * factor,
+				snapshot.get95thPercentile() * factor, snapshot.get99thPercentile() * factor, snapshot.getMax() * factor );
+	}
+}
@@ -0,0 +1,91 @@
+package com.dotcms.plugin.saml.v3.util;
+
+import com.dotcms.plugin.saml.v3.config.IdpConfig;
+import com.dotcms.plugin.saml.v3.exception.DotSamlException;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
+
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Remembers the ids of the SAML Responses and Assertions already consumed,
+ * until the message lifetime check would reject them anyway, so a captured
+ * SAMLResponse can not be posted again.
+ * <p>
+ * A known Response id is rejected with {@link #isReplayed(IdpConfig, String)}
+ * before decrypting and verifying the response; the ids are only recorded,
+ * with {@link #consume(IdpConfig, long, String...)}, once the signatures are
+ * valid, so unsigned junk can not fill the cache. The cache has a fixed
+ * capacity ({@link DotSamlConstants#DOT_SAML_REPLAY_CACHE_CAPACITY}) and fails
+ * closed: when it is full, responses are rejected.
+ */
+public class SamlReplayCache
+{
+	private static class SingletonHolder
+	{
+		private static final SamlReplayCache INSTANCE = new SamlReplayCache();
+	}
+
+	private static final long TICK_MILLIS = 1000;
+
+	public static SamlReplayCache getInstance()
+	{
+		return SamlReplayCache.SingletonHolder.INSTANCE;
+	}
+
+	private final ExpiringIdSet consumedIds = new ExpiringIdSet( Config.getIntProperty(
+			DotSamlConstants.DOT_SAML_REPLAY_CACHE_CAPACITY, DotSamlConstants.DOT_SAML_REPLAY_CACHE_CAPACITY_DEFAULT_VALUE ), TICK_MILLIS );
+
+	private SamlReplayCache()
+	{
+
+	}
+
+	/**
+	 * Returns true if the id has already been consumed for the IdP.
+	 *
+	 * @param idpConfig {@link IdpConfig}
+	 * @param id {@link String} Response or Assertion id
+	 * @return boolean
+	 */
+	public boolean isReplayed( final IdpConfig idpConfig, final String id )
+	{
+		return id != null && this.consumedIds.contains( ExpiringIdSet.hash( idpConfig.getId(), id ), System.currentTimeMillis() );
+	}
+
+	/**
+	 * Records the ids as consumed until the expiry time.
+	 *
+	 * @param idpConfig {@link IdpConfig}
+	 * @param expiresAt long time in millis after which the message is rejected as expired
+	 * @param ids {@link String} Response and Assertion ids
+	 * @throws DotSamlException if one of the ids was already consumed, or the cache is full
+	 */
+	public void consume( final IdpConfig idpConfig, final long expiresAt, final String... ids )
+	{
+		final long now = System.currentTimeMillis();
+
+		for ( String id : ids )
+		{
+			if ( id == null )
+			{
+				continue;
+			}
+
+			switch ( this.consumedIds.add( ExpiringIdSet.hash( idpConfig.getId(), id ), expiresAt, now ) )
+			{
+				case PRESENT:
+					Logger.warn( this, "Replayed SAML message for IdP '" + idpConfig.getIdpName() + "', id: " + id );
+					throw new DotSamlException( "The SAML message has already been used: " + id );
+
+				case FULL:
+					Logger.error( this, "The SAML replay cache is full, rejecting the SAML message. Consider raising: "
+							+ DotSamlConstants.DOT_SAML_REPLAY_CACHE_CAPACITY );
+					throw new DotSamlException( "Too many SAML logins in progress, try again later." );
+
+				default:
+					break;
+			}
+		}
+	}
+}
@@ -11,10 +11,8 @@ import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.namespace.QName;
@@ -74,6 +72,7 @@ import com.dotcms.plugin.saml.v3.config.EndpointHelper;
 import com.dotcms.plugin.saml.v3.config.IdpConfig;
 import com.dotcms.plugin.saml.v3.config.MetaDataHelper;
 import com.dotcms.plugin.saml.v3.exception.DotSamlException;
+import com.dotcms.plugin.saml.v3.key.DotSamlConstants;
 import com.dotcms.plugin.saml.v3.parameters.DotsamlPropertiesService;
 import com.dotcms.plugin.saml.v3.parameters.DotsamlPropertyName;
 import com.dotmarketing.util.Logger;
@@ -102,10 +101,6 @@ public class SamlUtils {
 	public static final String SAML_NAME_ID = "SAMLNameID";
 	public static final String SINGLE_LOGOUT_REASON = "urn:oasis:names:tc:SAML:2.0:logout:user";
 
-	private static Map<String, Credential> credentialMap = new ConcurrentHashMap<>();
-
-	private static Map<String, Credential> idpCredentialMap = new ConcurrentHashMap<>();
-
 	/**
 	 * Build a SAML Object
 	 * 
@@ -297,6 +292,38 @@ public class SamlUtils {
 		return secureRandomIdGenerator.generateIdentifier();
 	}
 
+	/**
+	 * Returns true if the path can be sent as the RelayState and used to
+	 * redirect after the login: a local path (so the RelayState can not send
+	 * the user to another site) that fits in the RelayState. The RelayState
+	 * comes back unsigned, so control chars and spaces are rejected too,
+	 * browsers strip them and "/&lt;TAB&gt;/host" would become "//host".
+	 * 
+	 * @return boolean
+	 */
+	public static boolean isRelayStatePath(final String path) {
+		if (!isSet(path) || path.length() > DotSamlConstants.DOT_SAML_RELAY_STATE_MAX_LENGTH
+				|| !path.startsWith("/") || path.startsWith("//") || path.indexOf('\\') >= 0) {
+			return false;
+		}
+
+		for (int i = 0; i < path.length(); i++) {
+			final char character = path.charAt(i);
+
+			if (character <= 0x20 || character == 0x7F) {
+				return false;
+			}
+		}
+
+		try {
+			final URI uri = new URI(path);
+
+			return null == uri.getScheme() && null == uri.getRawAuthority();
+		} catch (URISyntaxException e) {
+			return false;
+		}
+	}
+
 	/**
 	 * Build the Id for the sender.
 	 * 
@@ -689,26 +716,22 @@ public class SamlUtils {
 	}
 
 	/**
-	 * Get the SP credential
+	 * Get the SP credential, created once per IdpConfig and key/cert version
+	 * (see {@link CredentialRegistry#getSpInstance()})
 	 * 
 	 * @return Credential
 	 */
 	public static Credential getCredential(final IdpConfig idpConfig) {
-		if (!credentialMap.containsKey(idpConfig.getSpEndpointHostname())) {
-			final Credential credential = createCredential(idpConfig);
-
-			if (null != credential) {
-				credentialMap.put(idpConfig.getSpEndpointHostname(), credential);
-			} else {
-				Logger.error(SamlUtils.class,
-						"Credential is null for site: " + idpConfig.getSpEndpointHostname());
+		final Credential credential = CredentialRegistry.getSpInstance().get(idpConfig, SamlUtils::createCredential);
 
-				throw new DotSamlException("Credential is null for site: " + idpConfig.getSpEndpointHostname());
-			}
+		if (null == credential) {
+			Logger.error(SamlUtils.class,
+					"Credential is null for site: " + idpConfig.getSpEndpointHostname());
 
+			throw new DotSamlException("Credential is null for site: " + idpConfig.getSpEndpointHostname());
 		}
 
-		return credentialMap.get(idpConfig.getSpEndpointHostname());
+		return credential;
 	}
 
 	private static Credential createIdpCredential(final IdpConfig idpConfig) {
@@ -741,12 +764,14 @@ public class SamlUtils {
 		return idpCredential;
 	}
 
+	/**
+	 * Get the IdP credential, created once per IdpConfig (see
+	 * {@link CredentialRegistry#getIdpInstance()})
+	 * 
+	 * @return Credential
+	 */
 	public static Credential getIdPCredentials(final IdpConfig idpConfig) {
-		if (!idpCredentialMap.containsKey(idpConfig)) {
-			idpCredentialMap.put(idpConfig.getSpEndpointHostname(), createIdpCredential(idpConfig));
-		}
-
-		return idpCredentialMap.get(idpConfig.getSpEndpointHostname());
+		return CredentialRegistry.getIdpInstance().get(idpConfig, SamlUtils::createIdpCredential);
 	}
 
 	/**
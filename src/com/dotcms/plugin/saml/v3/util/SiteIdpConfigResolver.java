@@ -2,17 +2,13 @@ package com.dotcms.plugin.saml.v3.util;
 
 import com.dotcms.plugin.saml.v3.config.IdpConfig;
 import com.dotcms.plugin.saml.v3.config.IdpConfigHelper;
-import com.dotmarketing.beans.Host;
-import com.dotmarketing.business.APILocator;
+import com.dotcms.plugin.saml.v3.config.SiteRoute;
 import com.dotmarketing.exception.DotDataException;
-import com.dotmarketing.exception.DotSecurityException;
-import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
 import com.dotmarketing.util.json.JSONException;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -60,20 +56,7 @@ public class SiteIdpConfigResolver implements Serializable
 			throw new DotDataException("Site id is required.");
 		}
 
-		List<Host> hosts = null;
-		try {
-			hosts = APILocator.getHostAPI().findAll(APILocator.getUserAPI().getSystemUser(), false);
-
-		} catch (DotSecurityException e) {
-
-			throw new DotDataException("An error occurred when retrieving all dotCMS Sites");
-		}
-		
-		if ( hosts == null || hosts.isEmpty()){
-			throw new DotDataException("There are no Sites in this dotCMS instance.");
-		}
-
-		String hostId = findHostId(id, hosts);
+		String hostId = HostAliasIndex.getInstance().findHostname(id);
 
 		if (hostId == null) {
 			throw new DotDataException("Site with ID '" + id + "' was not found.");
@@ -82,30 +65,9 @@ public class SiteIdpConfigResolver implements Serializable
 		return hostId;
 	}
 
-	// Searches the host list and alias for each entry.
-	private String findHostId(String id, List<Host> hosts) {
-
-		for (Host h : hosts) {
-			if (id.equalsIgnoreCase(h.getHostname())) {
-				return h.getHostname();
-			}
-			if (h.getAliases() != null && !h.getAliases().isEmpty()) {
-
-				String[] aliases = h.getAliases().split("[\\s,]+");
-				for (String alias : aliases) {
-					if (id.equalsIgnoreCase(alias)) {
-						return h.getHostname();
-					}
-				}
-			}
-		}
-
-		return null;
-	}
-	
 	/**
-	 * Returns the IdpConfig associate to the current site, if it is not
-	 * found a match returns the default one site config.
+	 * Returns the IdpConfig associate to the current site, or the default one
+	 * if the site has none, null if SAML does not apply to the site.
 	 * 
 	 * @param serverName {@link String}
 	 * @return IdpConfig
@@ -115,29 +77,32 @@ public class SiteIdpConfigResolver implements Serializable
 	 */
 	public IdpConfig resolveIdpConfig( final String serverName ) throws DotDataException, IOException, JSONException
 	{
-		final IdpConfig idpConfig = IdpConfigHelper.getInstance().findSiteIdpConfig( serverName );
-
-		Logger.debug(this, "Resolving the configuration '" + idpConfig.getIdpName() + "' for site '" + serverName + "'" +
-				". Available sites [" + IdpConfigHelper.getInstance().getSiteNames() + "]");
+		return this.resolveRoute( serverName ).getIdpConfig();
+	}
 
-		return idpConfig;
+	/**
+	 * Returns what has to be done for the current site, see {@link SiteRoute}.
+	 * 
+	 * @param request {@link HttpServletRequest}
+	 * @return SiteRoute
+	 */
+	public SiteRoute resolveRoute( final HttpServletRequest request ) throws DotDataException, IOException, JSONException
+	{
+		return this.resolveRoute( getHostId( request.getServerName() ) );
 	}
 
 	/**
-	 * Tries to find the configuration for the disable host.
+	 * Returns what has to be done for the site, see {@link SiteRoute}.
 	 * 
-	 * @param request HttpServletRequest
-	 * @return IdpConfig
+	 * @param serverName {@link String} canonical hostname or identifier of the site
+	 * @return SiteRoute
 	 */
-	public IdpConfig findConfigurationForDisableHost( final HttpServletRequest request ) throws DotDataException, IOException, JSONException
+	public SiteRoute resolveRoute( final String serverName ) throws DotDataException, IOException, JSONException
 	{
-		final String serverName = request.getServerName();
-		final IdpConfig idpConfig = IdpConfigHelper.getInstance().findSiteIdpConfig( serverName );
+		final SiteRoute route = IdpConfigHelper.getInstance().route( serverName );
 
-		Logger.debug(this, "Resolving the configuration '" + idpConfig.getIdpName() + "' for site '" + serverName + "'" +
-				". Available sites [" + IdpConfigHelper.getInstance().getSiteNames() + "]");
+		SamlLogger.debug( this, () -> "Route for site '" + serverName + "': " + route );
 
-		return idpConfig;
+		return route;
 	}
-
 }